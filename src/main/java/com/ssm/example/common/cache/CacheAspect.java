@@ -0,0 +1,231 @@
+package com.ssm.example.common.cache;
+
+import com.ssm.example.common.utils.RedisCache;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Resource;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link Cached}/{@link CacheEvict} 的切面实现，基于 {@link RedisCache}
+ * <p>
+ * 同一节点上同一个 key 同时未命中时只有一个线程执行方法(加载)，其他线程等待并共用其结果或异常，
+ * 等待超过 loadWaitMillis 时自行执行方法。
+ * 分页缓存通过 {@link RedisCache#setPage} 记录索引，用于按用户+业务名整体删除。
+ * {@link CacheEvict} 在事务中时等事务提交后再删除，避免提交前被其他请求用旧数据重新写入缓存。
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/20 10:00
+ **/
+@Slf4j
+@Aspect
+public class CacheAspect {
+
+    private final SpelExpressionParser parser = new SpelExpressionParser();
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+    private final Map<String, Expression> expressions = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder waitTimeouts = new LongAdder();
+
+    /**
+     * 等待其他线程加载的最长时间(毫秒)
+     */
+    @Setter
+    private long loadWaitMillis = 5000;
+
+    @Resource
+    private RedisCache redisCache;
+
+    @Around("@annotation(cached)")
+    public Object cached(ProceedingJoinPoint point, Cached cached) throws Throwable {
+        EvaluationContext context = evaluationContext(point);
+        String key = cacheKey(context, cached.user(), cached.name(), cached.pageNo(), cached.pageSize());
+        if (key == null) {
+            return point.proceed();
+        }
+        Object value = redisCache.getObject(key);
+        if (value != null) {
+            hits.increment();
+            return value instanceof NullValue ? null : value;
+        }
+
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> running = loading.putIfAbsent(key, future);
+        if (running != null) {
+            coalesced.increment();
+            try {
+                return running.get(loadWaitMillis, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            } catch (TimeoutException e) {
+                waitTimeouts.increment();
+                log.warn("等待加载缓存超过 {} 毫秒，直接执行：{}", loadWaitMillis, key);
+                return point.proceed();
+            }
+        }
+        try {
+            // 上一个加载者可能在本线程读取之后、登记之前刚写入缓存
+            value = redisCache.getObject(key);
+            if (value != null) {
+                hits.increment();
+                value = value instanceof NullValue ? null : value;
+                future.complete(value);
+                return value;
+            }
+            misses.increment();
+            value = point.proceed();
+            store(context, cached, key, value);
+            future.complete(value);
+            return value;
+        } catch (Throwable e) {
+            loadFailures.increment();
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    @AfterReturning("@annotation(evict)")
+    public void evict(JoinPoint point, CacheEvict evict) {
+        EvaluationContext context = evaluationContext(point);
+        // 参数在方法返回时求值，删除可能推迟到事务提交后
+        String user = evaluate(context, evict.user());
+        Map<String, String> keys = new LinkedHashMap<>();
+        for (String name : evict.name()) {
+            String key = cacheKey(context, evict.user(), name, evict.pageNo(), evict.pageSize());
+            if (key != null) {
+                keys.put(name, key);
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    evict(evict, user, keys);
+                }
+            });
+        } else {
+            evict(evict, user, keys);
+        }
+    }
+
+    /**
+     * 缓存命中情况：hits 命中, misses 未命中(执行了方法), coalesced 等待其他线程加载, loadFailures 方法抛出异常,
+     * waitTimeouts 等待其他线程加载超时
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("hits", hits.sum());
+        result.put("misses", misses.sum());
+        result.put("coalesced", coalesced.sum());
+        result.put("loadFailures", loadFailures.sum());
+        result.put("waitTimeouts", waitTimeouts.sum());
+        result.put("loading", loading.size());
+        return result;
+    }
+
+    private void evict(CacheEvict evict, String user, Map<String, String> keys) {
+        for (Map.Entry<String, String> entry : keys.entrySet()) {
+            try {
+                if (evict.pageNo().isEmpty()) {
+                    redisCache.deletePages(user, entry.getKey());
+                } else {
+                    redisCache.delete(entry.getValue());
+                }
+            } catch (Exception e) {
+                // 事务已提交，删除失败不影响业务结果，缓存到期后自然失效
+                log.warn("删除缓存失败：{}", entry.getValue(), e);
+            }
+        }
+    }
+
+    private void store(EvaluationContext context, Cached cached, String key, Object value) {
+        try {
+            if (value == null) {
+                if (cached.cacheNull()) {
+                    redisCache.setObject(key, NullValue.INSTANCE, cached.nullTtl());
+                }
+                return;
+            }
+            if (cached.pageNo().isEmpty()) {
+                redisCache.setObject(key, value, cached.ttl());
+            } else {
+                redisCache.setPage(evaluate(context, cached.user()), cached.name(), key, value, cached.ttl());
+            }
+        } catch (Exception e) {
+            // 缓存写入失败不影响业务结果
+            log.warn("写入缓存失败：{}", key, e);
+        }
+    }
+
+    private String cacheKey(EvaluationContext context, String user, String name, String pageNo, String pageSize) {
+        String username = evaluate(context, user);
+        String key = redisCache.generateCacheKey(username, name);
+        if (key == null || pageNo.isEmpty()) {
+            return key;
+        }
+        return redisCache.generateCachePageKey(username, name,
+                toInteger(evaluate(context, pageNo)), toInteger(evaluate(context, pageSize)));
+    }
+
+    private EvaluationContext evaluationContext(JoinPoint point) {
+        Method method = ((MethodSignature) point.getSignature()).getMethod();
+        if (point.getTarget() != null) {
+            method = AopUtils.getMostSpecificMethod(method, point.getTarget().getClass());
+        }
+        return new MethodBasedEvaluationContext(point.getTarget(), method, point.getArgs(), parameterNameDiscoverer);
+    }
+
+    private String evaluate(EvaluationContext context, String expression) {
+        if (expression.isEmpty()) {
+            return null;
+        }
+        Object value = expressions.computeIfAbsent(expression, parser::parseExpression).getValue(context);
+        return value == null ? null : value.toString();
+    }
+
+    private static Integer toInteger(String value) {
+        return value == null ? null : Integer.valueOf(value);
+    }
+
+    /**
+     * 缓存的 null 返回值
+     */
+    enum NullValue {
+        INSTANCE
+    }
+}
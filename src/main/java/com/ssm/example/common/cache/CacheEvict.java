@@ -0,0 +1,42 @@
+package com.ssm.example.common.cache;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 方法执行成功后删除 {@link Cached} 写入的缓存(在事务中时等事务提交后删除)，key 的写法与 {@link Cached} 相同
+ * <p>
+ * 只指定 user/name 时同时删除该 key 下所有分页缓存。
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/20 9:40
+ **/
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CacheEvict {
+
+    /**
+     * 用户名部分(SpEL)
+     */
+    String user();
+
+    /**
+     * 业务相关命名，可以是多个
+     */
+    String[] name();
+
+    /**
+     * 页码(SpEL)，为空表示删除所有分页
+     */
+    String pageNo() default "";
+
+    /**
+     * 每页条数(SpEL)
+     */
+    String pageSize() default "";
+}
@@ -0,0 +1,64 @@
+package com.ssm.example.common.cache;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 读穿缓存：先读 redis，未命中时执行方法并把返回值写入 redis
+ * <p>
+ * key 由 {@link com.ssm.example.common.utils.RedisCache#generateCacheKey} 生成，
+ * 指定了 pageNo/pageSize 时由 generateCachePageKey 生成。
+ * user/pageNo/pageSize 为 SpEL 表达式，可以引用方法参数，如 "#username"、"#p0"、"#query.pageNo"。
+ * user 计算结果为空时不走缓存。
+ * <pre>
+ * &#64;Cached(user = "#username", name = "orders", pageNo = "#pageNo", pageSize = "#pageSize", ttl = 300)
+ * public List&lt;Order&gt; listOrders(String username, int pageNo, int pageSize)
+ * </pre>
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/20 9:30
+ **/
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Cached {
+
+    /**
+     * 用户名部分(SpEL)
+     */
+    String user();
+
+    /**
+     * 业务相关命名
+     */
+    String name();
+
+    /**
+     * 页码(SpEL)，为空表示不分页
+     */
+    String pageNo() default "";
+
+    /**
+     * 每页条数(SpEL)
+     */
+    String pageSize() default "";
+
+    /**
+     * 过期时间(秒)
+     */
+    long ttl() default 600;
+
+    /**
+     * 是否缓存 null 返回值，防止不存在的数据每次都穿透到数据库
+     */
+    boolean cacheNull() default true;
+
+    /**
+     * null 返回值的过期时间(秒)
+     */
+    long nullTtl() default 60;
+}
@@ -0,0 +1,158 @@
+package com.ssm.example.common.cache;
+
+import com.ssm.example.common.utils.RedisCache;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cache.Cache;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * mybatis 二级缓存，查询结果经 RedisCache 存入 redis(值按 redisTemplate 的序列化方式编码)，启用 NearCache 时先查本地
+ * <p>
+ * 每个 namespace 一个实例，缓存 key 为 mybatis:{namespace}:CacheKey 的 md5，并记入索引集合 mybatis:{namespace}，
+ * {namespace} 为 hash tag，redis 集群下同一 namespace 的 key 在同一个槽，lua 脚本可以同时访问。
+ * 本 namespace 的写语句所在事务提交后 mybatis 调用 {@link #clear()}，按索引删除该 namespace 的全部缓存，
+ * 本地缓存按前缀失效并通知其他节点。redis 不可用时读写缓存失败只记录日志，查询直接访问数据库。
+ * <p>
+ * 用法：mapper 中配置 &lt;cache type="com.ssm.example.common.cache.MybatisRedisCache"&gt;，
+ * 通过 &lt;property name="ttl" value="600"/&gt; 指定过期时间(秒)。
+ * 自定义缓存不经过 mybatis 的 SerializedCache，&lt;cache readOnly&gt; 属性不起作用，
+ * 通过 &lt;property name="readOnly" value="true"/&gt; 指定：默认 false，命中本地缓存时返回副本，调用方可以修改；
+ * true 时直接返回本地缓存中共享的对象，省去复制，调用方不能修改查询结果。
+ * 实例由 mybatis 创建，redisCache 在 spring 启动时通过 {@link #setRedisCache} 注入，注入前不缓存。
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/22 15:00
+ **/
+@Slf4j
+public class MybatisRedisCache implements Cache {
+
+    private static final String KEY_PREFIX = "mybatis:";
+
+    private static volatile RedisCache redisCache;
+
+    private final String id;
+
+    /**
+     * 索引集合的键，及缓存 key 的公共前缀
+     */
+    private final String indexKey;
+    private final String entryPrefix;
+
+    /**
+     * 过期时间(秒)，小于等于0表示永久
+     */
+    @Setter
+    private long ttl = 600;
+
+    /**
+     * 与 mybatis 的 readOnly 含义相同，true 时返回共享对象
+     */
+    @Setter
+    private boolean readOnly;
+
+    public MybatisRedisCache(String id) {
+        if (id == null) {
+            throw new IllegalArgumentException("Cache instances require an ID");
+        }
+        this.id = id;
+        this.indexKey = KEY_PREFIX + "{" + id + "}";
+        this.entryPrefix = indexKey + ":";
+    }
+
+    public static void setRedisCache(RedisCache redisCache) {
+        MybatisRedisCache.redisCache = redisCache;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        RedisCache cache = redisCache;
+        // 回滚或未命中时 mybatis 会放入 null，用于释放 BlockingCache 的锁，这里不需要处理
+        if (cache == null || value == null) {
+            return;
+        }
+        try {
+            cache.setIndexed(indexKey, entryKey(key), value, ttl);
+        } catch (Exception e) {
+            log.warn("mybatis 缓存写入失败，namespace:{}", id, e);
+        }
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        RedisCache cache = redisCache;
+        if (cache == null) {
+            return null;
+        }
+        try {
+            return readOnly ? cache.getObject(entryKey(key)) : cache.getObjectCopy(entryKey(key));
+        } catch (Exception e) {
+            log.warn("mybatis 缓存读取失败，namespace:{}", id, e);
+            return null;
+        }
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        RedisCache cache = redisCache;
+        if (cache != null) {
+            try {
+                cache.delete(entryKey(key));
+            } catch (Exception e) {
+                log.warn("mybatis 缓存删除失败，namespace:{}", id, e);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void clear() {
+        RedisCache cache = redisCache;
+        if (cache == null) {
+            return;
+        }
+        try {
+            long count = cache.deleteIndexed(indexKey, entryPrefix);
+            log.debug("mybatis 缓存失效，namespace:{}，key 数:{}", id, count);
+        } catch (Exception e) {
+            // 数据库事务已提交，这里不能抛出；未删除的缓存最迟在 ttl 后过期
+            log.error("mybatis 缓存失效失败，namespace:{}", id, e);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        RedisCache cache = redisCache;
+        if (cache == null) {
+            return 0;
+        }
+        try {
+            Long size = cache.sGetSetSize(indexKey);
+            return size == null ? 0 : size.intValue();
+        } catch (Exception e) {
+            log.warn("mybatis 缓存大小读取失败，namespace:{}", id, e);
+            return 0;
+        }
+    }
+
+    /**
+     * mybatis 3.2.6 起不再使用
+     */
+    @Override
+    public ReadWriteLock getReadWriteLock() {
+        return null;
+    }
+
+    private String entryKey(Object key) {
+        return entryPrefix + DigestUtils.md5DigestAsHex(key.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
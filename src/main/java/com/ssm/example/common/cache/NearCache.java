@@ -0,0 +1,300 @@
+package com.ssm.example.common.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 进程内一级缓存(L1)，位于 RedisCache 之前
+ * <p>
+ * 基于 Caffeine(W-TinyLFU 淘汰)，按条数限制大小，每个条目单独过期。
+ * 某个节点写入或删除 key 时，通过 redis 发布订阅通知其他节点删除本地副本。
+ * 读 redis 后回填本地缓存时，条目的过期时间不超过 redis 中剩余的过期时间；
+ * 读取期间该 key 被删除或写入(版本变化)时不回填，避免旧值覆盖失效。
+ * 注意：返回的是缓存对象本身，调用方不要修改。
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/14 15:30
+ **/
+@Slf4j
+public class NearCache implements MessageListener, InitializingBean {
+
+    /**
+     * 失效通知频道，消息格式：节点ID + 换行 + key；按前缀失效时为 节点ID + 换行 + 换行 + 前缀
+     */
+    public static final String CHANNEL = "near-cache:invalidate";
+
+    private static final byte[] RAW_CHANNEL = CHANNEL.getBytes(StandardCharsets.UTF_8);
+
+    private static final int VERSION_STRIPES = 1024;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 是否启用
+     */
+    @Getter
+    @Setter
+    private boolean enabled;
+
+    /**
+     * 最大条目数
+     */
+    @Setter
+    private long maximumSize = 10000;
+
+    /**
+     * 条目默认过期时间(秒)，写入 redis 时指定了更短的过期时间则以其为准
+     */
+    @Setter
+    private long expireSeconds = 60;
+
+    /**
+     * 只缓存这些前缀的 key，逗号分隔，为空则缓存所有 key
+     */
+    private String[] keyPrefixes = new String[0];
+
+    private Cache<String, Entry> cache;
+
+    /**
+     * 按 key 哈希分段的版本号，写入或失效时递增
+     */
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    /**
+     * 按前缀失效的次数，计入所有 key 的版本
+     */
+    private final AtomicLong prefixVersion = new AtomicLong();
+
+    public void setKeyPrefixes(String keyPrefixes) {
+        this.keyPrefixes = StringUtils.isBlank(keyPrefixes) ? new String[0] : StringUtils.stripAll(keyPrefixes.split(","));
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                        return entry.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                        return entry.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * key 是否由本地缓存管理
+     */
+    public boolean accepts(String key) {
+        if (!enabled || key == null) {
+            return false;
+        }
+        if (keyPrefixes.length == 0) {
+            return true;
+        }
+        for (String prefix : keyPrefixes) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获取本地缓存
+     *
+     * @param key 键
+     * @return 值，未命中返回 null
+     */
+    public Object get(String key) {
+        Entry entry = cache.getIfPresent(key);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * 放入本地缓存，不通知其他节点
+     *
+     * @param key   键
+     * @param value 值，null 不缓存
+     * @param time  redis 中的过期时间(秒)，小于等于0表示永久
+     */
+    public void put(String key, Object value, long time) {
+        if (value == null) {
+            invalidate(key);
+            return;
+        }
+        versions.incrementAndGet(stripe(key));
+        long ttl = time > 0 ? Math.min(time, expireSeconds) : expireSeconds;
+        cache.put(key, new Entry(value, TimeUnit.SECONDS.toNanos(ttl)));
+    }
+
+    /**
+     * 当前版本，读 redis 之前获取，回填时传给 {@link #fill}
+     *
+     * @param key 键
+     * @return 版本
+     */
+    public long version(String key) {
+        return prefixVersion.get() + versions.get(stripe(key));
+    }
+
+    /**
+     * 把从 redis 读到的值放入本地缓存，读取期间版本有变化时不放入
+     *
+     * @param key       键
+     * @param value     值，null 不缓存
+     * @param ttlMillis redis 中剩余的过期时间(毫秒)，小于0表示永久
+     * @param version   读 redis 之前 {@link #version} 返回的版本
+     */
+    public void fill(String key, Object value, long ttlMillis, long version) {
+        if (value == null || ttlMillis == 0 || version(key) != version) {
+            return;
+        }
+        long maxMillis = TimeUnit.SECONDS.toMillis(expireSeconds);
+        long ttl = ttlMillis > 0 ? Math.min(ttlMillis, maxMillis) : maxMillis;
+        cache.put(key, new Entry(value, TimeUnit.MILLISECONDS.toNanos(ttl)));
+        if (version(key) != version) {
+            // 放入的同时发生了写入或失效，失效方可能已经删除过，这里再删一次
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * 删除本地缓存并通知其他节点删除
+     *
+     * @param keys 键
+     */
+    public void evict(String... keys) {
+        for (String key : keys) {
+            if (!accepts(key)) {
+                continue;
+            }
+            invalidate(key);
+            publish(key);
+        }
+    }
+
+    /**
+     * 删除本地所有以 prefix 开头的缓存并通知其他节点删除
+     *
+     * @param prefix 键前缀
+     */
+    public void evictPrefix(String prefix) {
+        if (!accepts(prefix)) {
+            return;
+        }
+        invalidatePrefix(prefix);
+        publish("\n" + prefix);
+    }
+
+    /**
+     * 写入 redis 后更新本地缓存，并通知其他节点删除旧值
+     */
+    public void refresh(String key, Object value, long time) {
+        put(key, value, time);
+        publish(key);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int index = body.indexOf('\n');
+        if (index < 0 || body.substring(0, index).equals(nodeId)) {
+            // 本节点发出的消息，本地已处理
+            return;
+        }
+        String key = body.substring(index + 1);
+        if (key.startsWith("\n")) {
+            invalidatePrefix(key.substring(1));
+        } else {
+            invalidate(key);
+        }
+    }
+
+    /**
+     * 缓存统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("enabled", enabled);
+        map.put("size", cache.estimatedSize());
+        CacheStats stats = cache.stats();
+        map.put("hitCount", stats.hitCount());
+        map.put("missCount", stats.missCount());
+        map.put("hitRate", stats.hitRate());
+        map.put("evictionCount", stats.evictionCount());
+        return map;
+    }
+
+    /**
+     * 先递增版本再删除，正在回填的旧值要么不会放入，要么放入后被删除
+     */
+    private void invalidate(String key) {
+        versions.incrementAndGet(stripe(key));
+        cache.invalidate(key);
+    }
+
+    private void invalidatePrefix(String prefix) {
+        prefixVersion.incrementAndGet();
+        cache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    private static int stripe(String key) {
+        return (key.hashCode() & Integer.MAX_VALUE) % VERSION_STRIPES;
+    }
+
+    private void publish(String key) {
+        byte[] message = (nodeId + "\n" + key).getBytes(StandardCharsets.UTF_8);
+        try {
+            redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(RAW_CHANNEL, message));
+        } catch (Exception e) {
+            // 通知失败时其他节点的副本最迟在过期时间后失效
+            log.warn("本地缓存失效通知发送失败，key:{}", key, e);
+        }
+    }
+
+    private static class Entry {
+        private final Object value;
+        private final long ttlNanos;
+
+        Entry(Object value, long ttlNanos) {
+            this.value = value;
+            this.ttlNanos = ttlNanos;
+        }
+    }
+}
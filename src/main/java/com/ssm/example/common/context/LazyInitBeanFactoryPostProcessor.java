@@ -0,0 +1,40 @@
+package com.ssm.example.common.context;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+
+/**
+ * 把指定的 bean 改为延迟初始化，第一次使用时才创建，用于启动时不需要的重量级 bean
+ * <p>
+ * 被其他非延迟 bean 注入的 bean 仍会在启动时创建，配置前先确认没有这样的依赖。
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/23 10:30
+ **/
+@Slf4j
+public class LazyInitBeanFactoryPostProcessor implements BeanFactoryPostProcessor {
+
+    private String[] beanNames = new String[0];
+
+    /**
+     * @param beanNames bean 名称，逗号分隔
+     */
+    public void setBeanNames(String beanNames) {
+        this.beanNames = StringUtils.isBlank(beanNames) ? new String[0] : StringUtils.stripAll(beanNames.split(","));
+    }
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        for (String beanName : beanNames) {
+            if (beanFactory.containsBeanDefinition(beanName)) {
+                beanFactory.getBeanDefinition(beanName).setLazyInit(true);
+            } else {
+                log.warn("延迟初始化的 bean {} 不存在", beanName);
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.ssm.example.common.context;
+
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessorAdapter;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.Ordered;
+import org.springframework.core.PriorityOrdered;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动耗时统计：记录每个 bean 从实例化到初始化完成的耗时，容器刷新完成后输出容器总耗时及最慢的 bean
+ * <p>
+ * bean 的耗时为自身耗时，不含创建其依赖的时间。在此之前创建的 BeanFactoryPostProcessor 及
+ * PriorityOrdered 的 BeanPostProcessor 不在统计范围内。每个容器单独配置一个。
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/23 10:00
+ **/
+@Slf4j
+public class StartupTimingPostProcessor extends InstantiationAwareBeanPostProcessorAdapter
+        implements PriorityOrdered, ApplicationContextAware, ApplicationListener<ContextRefreshedEvent> {
+
+    /**
+     * 输出最慢的 bean 个数
+     */
+    @Setter
+    private int top = 20;
+
+    private ApplicationContext applicationContext;
+
+    private volatile boolean started;
+
+    private final Map<String, Long> beanNanos = new ConcurrentHashMap<>();
+
+    /**
+     * 正在创建的 bean：名称、开始时间、其中创建依赖所用的时间
+     */
+    private final ThreadLocal<Deque<Object[]>> creating = ThreadLocal.withInitial(ArrayDeque::new);
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) {
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public Object postProcessBeforeInstantiation(Class<?> beanClass, String beanName) throws BeansException {
+        if (!started) {
+            creating.get().push(new Object[]{beanName, System.nanoTime(), 0L});
+        }
+        return null;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        Deque<Object[]> stack = creating.get();
+        // FactoryBean 创建的对象也会回调，此时栈顶不是该 bean
+        if (started || stack.isEmpty() || !stack.peek()[0].equals(beanName)) {
+            return bean;
+        }
+        Object[] current = stack.pop();
+        long total = System.nanoTime() - (Long) current[1];
+        beanNanos.merge(beanName, total - (Long) current[2], Long::sum);
+        if (!stack.isEmpty()) {
+            Object[] parent = stack.peek();
+            parent[2] = (Long) parent[2] + total;
+        }
+        return bean;
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        // 子容器刷新的事件也会发布到父容器
+        if (event.getApplicationContext() != applicationContext || started) {
+            return;
+        }
+        started = true;
+        creating.remove();
+        long elapsed = System.currentTimeMillis() - applicationContext.getStartupDate();
+        List<Map.Entry<String, Long>> beans = new ArrayList<>(beanNanos.entrySet());
+        beans.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < Math.min(top, beans.size()); i++) {
+            Map.Entry<String, Long> entry = beans.get(i);
+            builder.append("\n  ").append(entry.getKey()).append(": ")
+                    .append(TimeUnit.NANOSECONDS.toMillis(entry.getValue())).append("ms");
+        }
+        log.info("容器 {} 启动耗时 {}ms，bean {} 个，最慢的 bean：{}", new Object[]{applicationContext.getDisplayName(),
+                elapsed, applicationContext.getBeanDefinitionCount(), builder});
+        beanNanos.clear();
+    }
+}
@@ -0,0 +1,107 @@
+package com.ssm.example.common.db;
+
+import com.ssm.example.common.metrics.LatencyHistogram;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HikariCP 连接池指标：获取连接耗时、连接占用时间、新建连接耗时的直方图，获取超时次数，以及连接数
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/21 15:40
+ **/
+public class PoolMetricsTrackerFactory implements MetricsTrackerFactory {
+
+    /**
+     * 当前线程最近一次获取连接的耗时(纳秒)，-1 表示没有，供 SQL 统计按语句记录
+     */
+    private static final ThreadLocal<long[]> LAST_ACQUIRE = ThreadLocal.withInitial(() -> new long[]{-1});
+
+    private final Map<String, Tracker> trackers = new ConcurrentHashMap<>();
+
+    /**
+     * 取出并清除当前线程最近一次获取连接的耗时
+     *
+     * @return 纳秒，之后没有获取过连接时返回 -1
+     */
+    public static long takeLastAcquireNanos() {
+        long[] holder = LAST_ACQUIRE.get();
+        long nanos = holder[0];
+        holder[0] = -1;
+        return nanos;
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        Tracker tracker = new Tracker(poolStats);
+        trackers.put(poolName, tracker);
+        return tracker;
+    }
+
+    /**
+     * 各连接池统计：active 使用中, idle 空闲, total 总数, waiting 等待获取连接的线程数(每秒左右刷新一次)，
+     * acquire 获取连接耗时, usage 连接从借出到归还的时间, creation 新建连接耗时, timeouts 获取连接超时次数
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        trackers.forEach((poolName, tracker) -> {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("active", tracker.poolStats.getActiveConnections());
+            map.put("idle", tracker.poolStats.getIdleConnections());
+            map.put("total", tracker.poolStats.getTotalConnections());
+            map.put("max", tracker.poolStats.getMaxConnections());
+            map.put("waiting", tracker.poolStats.getPendingThreads());
+            map.put("timeouts", tracker.timeouts.sum());
+            map.put("acquire", tracker.acquire.snapshot());
+            map.put("usage", tracker.usage.snapshot());
+            map.put("creation", tracker.creation.snapshot());
+            result.put(poolName, map);
+        });
+        return result;
+    }
+
+    private class Tracker implements IMetricsTracker {
+        private final PoolStats poolStats;
+        private final LatencyHistogram acquire = new LatencyHistogram();
+        private final LatencyHistogram usage = new LatencyHistogram();
+        private final LatencyHistogram creation = new LatencyHistogram();
+        private final LongAdder timeouts = new LongAdder();
+
+        Tracker(PoolStats poolStats) {
+            this.poolStats = poolStats;
+        }
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            acquire.recordNanos(elapsedAcquiredNanos);
+            LAST_ACQUIRE.get()[0] = elapsedAcquiredNanos;
+        }
+
+        @Override
+        public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+            usage.recordMillis(elapsedBorrowedMillis);
+        }
+
+        @Override
+        public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+            creation.recordMillis(connectionCreatedMillis);
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            timeouts.increment();
+        }
+
+        @Override
+        public void close() {
+            trackers.values().remove(this);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.ssm.example.common.db;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 方法内的查询路由到从库，不需要开启只读事务
+ * <p>
+ * 已经在读写事务中时继续使用事务的主库连接，保证能读到本事务的写入。
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/22 10:00
+ **/
+@Documented
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadOnly {
+}
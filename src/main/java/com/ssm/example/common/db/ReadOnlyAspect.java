@@ -0,0 +1,26 @@
+package com.ssm.example.common.db;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+/**
+ * {@link ReadOnly} 的切面实现
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/22 10:10
+ **/
+@Aspect
+public class ReadOnlyAspect {
+
+    @Around("@annotation(com.ssm.example.common.db.ReadOnly) || @within(com.ssm.example.common.db.ReadOnly)")
+    public Object readOnly(ProceedingJoinPoint point) throws Throwable {
+        boolean previous = ReadWriteRoutingDataSource.markReadOnly(true);
+        try {
+            return point.proceed();
+        } finally {
+            ReadWriteRoutingDataSource.markReadOnly(previous);
+        }
+    }
+}
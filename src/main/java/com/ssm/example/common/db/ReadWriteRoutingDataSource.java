@@ -0,0 +1,253 @@
+package com.ssm.example.common.db;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 读写分离数据源：只读事务及 {@link ReadOnly} 方法中的查询轮询分配到健康的从库，其余走主库
+ * <p>
+ * 从库连接池按主库的配置创建，只替换 jdbcUrl。后台定时检查从库：连接不可用或复制延迟超过 maxLagSeconds
+ * 时不再分配，恢复后重新加入；没有可用从库时读请求回落到主库。从库初始为不可用，第一次检查在后台线程执行，
+ * 从库连不上时不会阻塞启动。
+ * 读写事务中的查询(包括其中调用的 {@link ReadOnly} 方法)始终走主库，保证能读到本事务已写入的数据。
+ * 事务开始时就会获取连接，此时只读标记还未设置，因此需要外面包一层 LazyConnectionDataSourceProxy，
+ * 在执行第一条语句时才真正选择数据源。
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/22 10:30
+ **/
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    private static final String PRIMARY = "primary";
+
+    private static final ThreadLocal<Boolean> READ_ONLY = new ThreadLocal<>();
+
+    /**
+     * 主库
+     */
+    @Setter
+    private HikariDataSource primary;
+
+    /**
+     * 从库地址，逗号分隔，为空时读写都走主库
+     */
+    private String[] replicaUrls = new String[0];
+
+    /**
+     * 健康检查间隔(毫秒)
+     */
+    @Setter
+    private long healthCheckIntervalMillis = 5000;
+
+    /**
+     * 复制延迟超过该秒数时不再分配读请求
+     */
+    @Setter
+    private long maxLagSeconds = 5;
+
+    /**
+     * 查询复制延迟(秒)的语句，取 Seconds_Behind_Master 或 Seconds_Behind_Source(MySQL 8.0.22+ 的
+     * SHOW REPLICA STATUS)列，都没有时结果只能有一列；为空时只检查连接是否可用
+     */
+    @Setter
+    private String lagQuery = "SHOW SLAVE STATUS";
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder primaryRoutes = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private ScheduledExecutorService healthChecker;
+
+    public void setReplicaUrls(String replicaUrls) {
+        this.replicaUrls = StringUtils.isBlank(replicaUrls) ? new String[0] : StringUtils.stripAll(replicaUrls.split(","));
+    }
+
+    /**
+     * 设置当前线程是否读从库
+     *
+     * @param readOnly 是否只读
+     * @return 之前的值，用于恢复
+     */
+    static boolean markReadOnly(boolean readOnly) {
+        boolean previous = Boolean.TRUE.equals(READ_ONLY.get());
+        if (readOnly) {
+            READ_ONLY.set(Boolean.TRUE);
+        } else {
+            READ_ONLY.remove();
+        }
+        return previous;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicaUrls.length; i++) {
+            HikariConfig config = new HikariConfig();
+            primary.copyStateTo(config);
+            config.setPoolName(primary.getPoolName() + "-replica-" + i);
+            config.setJdbcUrl(replicaUrls[i]);
+            // 从库不可用时不影响启动，由健康检查标记
+            config.setInitializationFailTimeout(-1);
+            config.setReadOnly(true);
+            Replica replica = new Replica(config.getPoolName(), new HikariDataSource(config));
+            replicas.add(replica);
+            targets.put(replica.name, replica.dataSource);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        super.afterPropertiesSet();
+
+        if (!replicas.isEmpty()) {
+            healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "replica-health-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+            healthChecker.scheduleWithFixedDelay(this::checkReplicas, 0, healthCheckIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            primaryRoutes.increment();
+            return PRIMARY;
+        }
+        boolean read = Boolean.TRUE.equals(READ_ONLY.get()) || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        if (read && !replicas.isEmpty()) {
+            int size = replicas.size();
+            int start = next.getAndIncrement();
+            for (int i = 0; i < size; i++) {
+                Replica replica = replicas.get(Math.floorMod(start + i, size));
+                if (replica.healthy) {
+                    replica.routes.increment();
+                    return replica.name;
+                }
+            }
+            fallbacks.increment();
+        }
+        primaryRoutes.increment();
+        return PRIMARY;
+    }
+
+    /**
+     * 各数据源的分配次数，从库的健康状态及复制延迟，fallbacks 为没有可用从库回落到主库的次数
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put(PRIMARY, primaryRoutes.sum());
+        result.put("fallbacks", fallbacks.sum());
+        for (Replica replica : replicas) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("healthy", replica.healthy);
+            map.put("lagSeconds", replica.lagSeconds);
+            map.put("routes", replica.routes.sum());
+            map.put("error", replica.error);
+            result.put(replica.name, map);
+        }
+        return result;
+    }
+
+    @Override
+    public void destroy() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+        replicas.forEach(replica -> replica.dataSource.close());
+    }
+
+    private void checkReplicas() {
+        for (Replica replica : replicas) {
+            boolean healthy;
+            try {
+                Long lag = queryLag(replica.dataSource);
+                replica.lagSeconds = lag;
+                replica.error = lag == null ? "复制未运行" : null;
+                healthy = lag != null && lag <= maxLagSeconds;
+            } catch (Exception e) {
+                replica.lagSeconds = null;
+                replica.error = e.getMessage();
+                healthy = false;
+            }
+            if (healthy != replica.healthy) {
+                log.warn("从库{}状态变为{}，复制延迟：{}秒，{}",
+                        new Object[]{replica.name, healthy ? "可用" : "不可用", replica.lagSeconds, StringUtils.defaultString(replica.error)});
+            }
+            replica.healthy = healthy;
+        }
+    }
+
+    /**
+     * @return 复制延迟(秒)，复制未运行时为 null
+     */
+    private Long queryLag(DataSource dataSource) throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            if (StringUtils.isBlank(lagQuery)) {
+                return connection.isValid(5) ? 0L : null;
+            }
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(lagQuery)) {
+                if (!rs.next()) {
+                    return null;
+                }
+                Object lag = rs.getObject(lagColumn(rs.getMetaData()));
+                return lag == null ? null : Long.valueOf(lag.toString());
+            }
+        }
+    }
+
+    private static int lagColumn(ResultSetMetaData metaData) throws Exception {
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            String label = metaData.getColumnLabel(i);
+            if ("Seconds_Behind_Master".equalsIgnoreCase(label) || "Seconds_Behind_Source".equalsIgnoreCase(label)) {
+                return i;
+            }
+        }
+        if (metaData.getColumnCount() == 1) {
+            return 1;
+        }
+        throw new SQLException("lagQuery 结果中没有 Seconds_Behind_Master/Seconds_Behind_Source 列");
+    }
+
+    private static class Replica {
+        private final String name;
+        private final HikariDataSource dataSource;
+        private final LongAdder routes = new LongAdder();
+        private volatile boolean healthy;
+        private volatile Long lagSeconds;
+        private volatile String error;
+
+        Replica(String name, HikariDataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.ssm.example.common.db;
+
+import com.ssm.example.common.metrics.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SQL 执行统计插件，按 MappedStatement id 记录：
+ * <ul>
+ * <li>calls：mapper 方法调用次数，包括一级/二级缓存命中</li>
+ * <li>executions、latency：实际执行 JDBC 语句的次数及耗时(含结果映射)，批量语句按 flushStatements 计</li>
+ * <li>rows：查询返回或更新影响的行数，使用 ResultHandler 的流式查询不计</li>
+ * <li>unknownRows：批量语句中驱动返回 SUCCESS_NO_INFO、不知道影响行数的语句条数，不计入 rows；
+ * 返回 EXECUTE_FAILED 的计入 errors</li>
+ * <li>acquire：从连接池获取连接的耗时，取自 {@link PoolMetricsTrackerFactory}，归到获取连接后的第一条语句</li>
+ * </ul>
+ * 超过 slowQueryMillis 的语句记录慢 SQL 日志，只输出带占位符的 SQL 及参数个数，不输出参数值。
+ * 记录只有原子加和 ThreadLocal 读写，不创建对象，可以在生产环境常开。
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/22 17:00
+ **/
+@Slf4j
+@Intercepts({
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "flushStatements", args = {}),
+        @Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class}),
+        @Signature(type = StatementHandler.class, method = "query", args = {Statement.class, ResultHandler.class}),
+        @Signature(type = StatementHandler.class, method = "update", args = {Statement.class})
+})
+public class SqlMetricsInterceptor implements Interceptor {
+
+    /**
+     * 当前线程正在执行的语句，StatementHandler 中拿不到 MappedStatement，由 Executor 层设置
+     */
+    private static final ThreadLocal<StatementMetrics> CURRENT = new ThreadLocal<>();
+
+    private final Map<String, StatementMetrics> statements = new ConcurrentHashMap<>();
+
+    /**
+     * 慢 SQL 阈值(毫秒)，小于等于0不记录
+     */
+    private long slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(1000);
+
+    @Override
+    public void setProperties(Properties properties) {
+        String slowQueryMillis = properties.getProperty("slowQueryMillis");
+        if (StringUtils.isNotBlank(slowQueryMillis)) {
+            slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(slowQueryMillis.trim()));
+        }
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        if (target instanceof Executor || target instanceof StatementHandler) {
+            return Plugin.wrap(target, this);
+        }
+        return target;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        if (invocation.getTarget() instanceof Executor) {
+            return "flushStatements".equals(invocation.getMethod().getName())
+                    ? flushStatements(invocation) : execute(invocation);
+        }
+        switch (invocation.getMethod().getName()) {
+            case "prepare":
+                return prepare(invocation);
+            case "query":
+                return statement(invocation, true);
+            default:
+                return statement(invocation, false);
+        }
+    }
+
+    /**
+     * 各语句统计，按 id 排序
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new TreeMap<>();
+        statements.forEach((id, metrics) -> result.put(id, metrics.stats()));
+        return result;
+    }
+
+    /**
+     * 清空各语句统计，之后重新开始计数
+     */
+    public void reset() {
+        statements.clear();
+    }
+
+    private Object execute(Invocation invocation) throws Throwable {
+        StatementMetrics metrics = metrics((MappedStatement) invocation.getArgs()[0]);
+        metrics.calls.increment();
+        StatementMetrics previous = CURRENT.get();
+        CURRENT.set(metrics);
+        try {
+            return invocation.proceed();
+        } catch (Throwable e) {
+            metrics.errors.increment();
+            throw e;
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object flushStatements(Invocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        Object result = invocation.proceed();
+        List<BatchResult> batches = (List<BatchResult>) result;
+        if (!batches.isEmpty()) {
+            // 一次 flush 可能包含多条语句，耗时按语句平均分摊
+            long elapsed = (System.nanoTime() - start) / batches.size();
+            for (int i = 0; i < batches.size(); i++) {
+                BatchResult batch = batches.get(i);
+                StatementMetrics metrics = metrics(batch.getMappedStatement());
+                long rows = 0;
+                for (int count : batch.getUpdateCounts()) {
+                    if (count >= 0) {
+                        rows += count;
+                    } else if (count == Statement.SUCCESS_NO_INFO) {
+                        // 驱动改写批量语句(rewriteBatchedStatements)时只知道执行成功，不知道影响行数
+                        metrics.unknownRows.increment();
+                    } else if (count == Statement.EXECUTE_FAILED) {
+                        metrics.errors.increment();
+                    }
+                }
+                metrics.recordExecution(elapsed, rows);
+            }
+        }
+        return result;
+    }
+
+    private Object prepare(Invocation invocation) throws Throwable {
+        Object statement = invocation.proceed();
+        // LazyConnectionDataSourceProxy 在创建第一条语句时才真正获取连接
+        long acquire = PoolMetricsTrackerFactory.takeLastAcquireNanos();
+        StatementMetrics metrics = CURRENT.get();
+        if (acquire >= 0 && metrics != null) {
+            metrics.acquire.recordNanos(acquire);
+        }
+        return statement;
+    }
+
+    private Object statement(Invocation invocation, boolean query) throws Throwable {
+        StatementMetrics metrics = CURRENT.get();
+        if (metrics == null) {
+            return invocation.proceed();
+        }
+        long start = System.nanoTime();
+        Object result = invocation.proceed();
+        long elapsed = System.nanoTime() - start;
+        long rows = query ? ((List<?>) result).size() : (Integer) result;
+        metrics.recordExecution(elapsed, rows);
+        if (slowQueryNanos > 0 && elapsed >= slowQueryNanos) {
+            logSlowQuery(metrics.id, ((StatementHandler) invocation.getTarget()).getBoundSql(), elapsed, rows);
+        }
+        return result;
+    }
+
+    private void logSlowQuery(String id, BoundSql boundSql, long elapsed, long rows) {
+        log.warn("慢SQL {} 耗时 {}ms，行数 {}，参数 {} 个(不输出参数值)：{}", new Object[]{id,
+                TimeUnit.NANOSECONDS.toMillis(elapsed), rows, boundSql.getParameterMappings().size(),
+                StringUtils.normalizeSpace(boundSql.getSql())});
+    }
+
+    private StatementMetrics metrics(MappedStatement mappedStatement) {
+        String id = mappedStatement.getId();
+        StatementMetrics metrics = statements.get(id);
+        if (metrics == null) {
+            metrics = statements.computeIfAbsent(id, StatementMetrics::new);
+        }
+        return metrics;
+    }
+
+    private static class StatementMetrics {
+        private final String id;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder unknownRows = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram acquire = new LatencyHistogram();
+
+        StatementMetrics(String id) {
+            this.id = id;
+        }
+
+        void recordExecution(long nanos, long rowCount) {
+            executions.increment();
+            rows.add(rowCount);
+            latency.recordNanos(nanos);
+        }
+
+        Map<String, Object> stats() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("calls", calls.sum());
+            map.put("executions", executions.sum());
+            map.put("rows", rows.sum());
+            map.put("unknownRows", unknownRows.sum());
+            map.put("errors", errors.sum());
+            map.put("latency", latency.snapshot());
+            map.put("acquire", acquire.snapshot());
+            return map;
+        }
+    }
+}
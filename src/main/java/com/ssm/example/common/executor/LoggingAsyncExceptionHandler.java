@@ -0,0 +1,39 @@
+package com.ssm.example.common.executor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 返回 void 的 @Async 方法抛出的异常：记录日志并按方法计数
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/23 14:30
+ **/
+@Slf4j
+public class LoggingAsyncExceptionHandler implements AsyncUncaughtExceptionHandler {
+
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    @Override
+    public void handleUncaughtException(Throwable e, Method method, Object... params) {
+        String name = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        errors.computeIfAbsent(name, key -> new LongAdder()).increment();
+        log.error("异步方法 {} 执行失败，参数 {} 个", new Object[]{name, params.length, e});
+    }
+
+    /**
+     * 各方法的异常次数
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> result = new TreeMap<>();
+        errors.forEach((name, count) -> result.put(name, count.sum()));
+        return result;
+    }
+}
@@ -0,0 +1,48 @@
+package com.ssm.example.common.executor;
+
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * 可运行时调整、带统计的异步执行器，实现有线程池 {@link ManagedThreadPool} 和虚拟线程 {@link VirtualThreadExecutor}
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/24 10:00
+ **/
+public interface ManagedExecutor extends Executor {
+
+    String getName();
+
+    /**
+     * 调整并发数及排队长度
+     *
+     * @param corePoolSize  核心线程数，虚拟线程执行器忽略
+     * @param maxPoolSize   最多同时执行的任务数
+     * @param queueCapacity 最多排队等待的任务数
+     */
+    void resize(int corePoolSize, int maxPoolSize, int queueCapacity);
+
+    /**
+     * 统计：执行中及排队的任务数，排队时间、执行时间，拒绝及失败次数
+     */
+    Map<String, Object> stats();
+
+    /**
+     * 并发数及排队都已满时的处理方式
+     */
+    enum RejectPolicy {
+        /**
+         * 抛出 RejectedExecutionException，由提交方处理
+         */
+        ABORT,
+        /**
+         * 在提交任务的线程中执行，会占用调度线程或请求线程
+         */
+        CALLER_RUNS,
+        /**
+         * 丢弃
+         */
+        DISCARD
+    }
+}
@@ -0,0 +1,225 @@
+package com.ssm.example.common.executor;
+
+import com.ssm.example.common.metrics.LatencyHistogram;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 可运行时调整大小、带统计的线程池
+ * <p>
+ * 线程数及队列长度可以通过 {@link #resize} 调整；队列满时按 {@link RejectPolicy} 处理并计数，
+ * 不会悄悄转到调用线程执行(除非配置为 CALLER_RUNS)。统计任务在队列中的等待时间、执行时间、
+ * 拒绝及执行失败次数。不同类型的任务使用各自的线程池(舱壁隔离)，某类任务堆积不会占满其他任务的线程。
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/23 14:00
+ **/
+@Slf4j
+public class ManagedThreadPool extends ThreadPoolExecutor implements ManagedExecutor, DisposableBean {
+
+    /**
+     * 拒绝日志的最小间隔(毫秒)，避免队列持续满时刷屏
+     */
+    private static final long REJECT_LOG_INTERVAL_MILLIS = 1000;
+
+    @Getter
+    private final String name;
+
+    private final ResizableQueue queue;
+    private final LatencyHistogram waitTime = new LatencyHistogram();
+    private final LatencyHistogram executionTime = new LatencyHistogram();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final AtomicLong lastRejectLog = new AtomicLong();
+
+    /**
+     * 关闭时等待已提交任务完成的最长时间(秒)
+     */
+    @Setter
+    private long awaitTerminationSeconds = 60;
+
+    /**
+     * @param name             名称，同时作为线程名前缀
+     * @param corePoolSize     核心线程数
+     * @param maxPoolSize      最大线程数，队列满后才会创建核心线程以外的线程
+     * @param queueCapacity    队列长度
+     * @param keepAliveSeconds 非核心线程空闲存活时间(秒)
+     * @param rejectPolicy     队列满且线程数达到最大时的处理方式
+     */
+    public ManagedThreadPool(String name, int corePoolSize, int maxPoolSize, int queueCapacity,
+                             long keepAliveSeconds, RejectPolicy rejectPolicy) {
+        this(name, corePoolSize, maxPoolSize, new ResizableQueue(queueCapacity), keepAliveSeconds, rejectPolicy);
+    }
+
+    private ManagedThreadPool(String name, int corePoolSize, int maxPoolSize, ResizableQueue queue,
+                              long keepAliveSeconds, RejectPolicy rejectPolicy) {
+        super(corePoolSize, maxPoolSize, keepAliveSeconds, TimeUnit.SECONDS, queue, new NamedThreadFactory(name),
+                new Rejection(rejectPolicy));
+        this.name = name;
+        this.queue = queue;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(new TimedTask(command));
+    }
+
+    /**
+     * 调整线程数及队列长度，缩小队列时已在队列中的任务不受影响
+     */
+    @Override
+    public synchronized void resize(int corePoolSize, int maxPoolSize, int queueCapacity) {
+        if (corePoolSize < 0 || maxPoolSize <= 0 || maxPoolSize < corePoolSize || queueCapacity < 0) {
+            throw new IllegalArgumentException("线程池参数不合法：core=" + corePoolSize + ", max=" + maxPoolSize
+                    + ", queue=" + queueCapacity);
+        }
+        // 任何时刻都要满足 core <= max
+        if (maxPoolSize >= getCorePoolSize()) {
+            setMaximumPoolSize(maxPoolSize);
+            setCorePoolSize(corePoolSize);
+        } else {
+            setCorePoolSize(corePoolSize);
+            setMaximumPoolSize(maxPoolSize);
+        }
+        queue.capacity = queueCapacity;
+        log.info("线程池 {} 调整为 core={}, max={}, queue={}", new Object[]{name, corePoolSize, maxPoolSize, queueCapacity});
+    }
+
+    /**
+     * 统计：active 执行中线程数, poolSize 当前线程数, queued 队列中任务数, completed 已完成任务数,
+     * rejected 拒绝次数, failed 执行抛出异常次数(submit 提交的任务异常保存在 Future 中，不计入),
+     * waitTime 排队时间, executionTime 执行时间
+     */
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("mode", "pool");
+        map.put("corePoolSize", getCorePoolSize());
+        map.put("maxPoolSize", getMaximumPoolSize());
+        map.put("queueCapacity", queue.capacity);
+        map.put("active", getActiveCount());
+        map.put("poolSize", getPoolSize());
+        map.put("largestPoolSize", getLargestPoolSize());
+        map.put("queued", queue.size());
+        map.put("completed", getCompletedTaskCount());
+        map.put("rejected", rejected.sum());
+        map.put("failed", failed.sum());
+        map.put("waitTime", waitTime.snapshot());
+        map.put("executionTime", executionTime.snapshot());
+        return map;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        shutdown();
+        if (!awaitTermination(awaitTerminationSeconds, TimeUnit.SECONDS)) {
+            log.warn("线程池 {} 在 {} 秒内未执行完，剩余 {} 个任务", new Object[]{name, awaitTerminationSeconds,
+                    shutdownNow().size()});
+        }
+    }
+
+    private class TimedTask implements Runnable {
+        private final Runnable task;
+        private final long submitted = System.nanoTime();
+
+        TimedTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            waitTime.recordNanos(start - submitted);
+            try {
+                task.run();
+            } catch (RuntimeException | Error e) {
+                // 已记录日志，不再抛出：否则会交给 ThreadGroup 打印到 stderr 并导致工作线程被替换
+                failed.increment();
+                log.error("线程池 {} 任务执行失败", name, e);
+            } finally {
+                executionTime.recordNanos(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static class Rejection implements RejectedExecutionHandler {
+        private final RejectPolicy policy;
+
+        Rejection(RejectPolicy policy) {
+            this.policy = policy;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            ManagedThreadPool pool = (ManagedThreadPool) executor;
+            pool.rejected.increment();
+            long now = System.currentTimeMillis();
+            long last = pool.lastRejectLog.get();
+            if (now - last >= REJECT_LOG_INTERVAL_MILLIS && pool.lastRejectLog.compareAndSet(last, now)) {
+                log.warn("线程池 {} 已满，按 {} 处理，累计拒绝 {} 次", new Object[]{pool.name, policy, pool.rejected.sum()});
+            }
+            switch (policy) {
+                case CALLER_RUNS:
+                    if (!executor.isShutdown()) {
+                        r.run();
+                    }
+                    return;
+                case DISCARD:
+                    return;
+                default:
+                    throw new RejectedExecutionException("线程池 " + pool.name + " 已满");
+            }
+        }
+    }
+
+    /**
+     * 长度可调的队列：超过 capacity 时 offer 返回 false，线程池随之创建非核心线程或拒绝任务。
+     * 长度检查与入队不是原子的，并发提交时可能短暂超出几个
+     */
+    private static class ResizableQueue extends LinkedBlockingQueue<Runnable> {
+        private volatile int capacity;
+
+        ResizableQueue(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        public boolean offer(Runnable runnable) {
+            return size() < capacity && super.offer(runnable);
+        }
+
+        @Override
+        public int remainingCapacity() {
+            return Math.max(0, capacity - size());
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger index = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, prefix + "-" + index.incrementAndGet());
+        }
+    }
+}
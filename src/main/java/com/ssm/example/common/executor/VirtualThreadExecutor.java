@@ -0,0 +1,292 @@
+package com.ssm.example.common.executor;
+
+import com.ssm.example.common.metrics.LatencyHistogram;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 每个任务一个虚拟线程的执行器，需要 JDK 21 及以上，用 {@link #isSupported()} 判断
+ * <p>
+ * 虚拟线程阻塞在 IO 上时不占用平台线程，适合大量阻塞在数据库、redis、HTTP 上的任务。
+ * 但数据库及 redis 连接数是有限的，虚拟线程不设上限会让成千上万个任务同时去抢连接，因此用信号量
+ * 限制同时执行的任务数(maxConcurrency，不超过 Hikari 及 Jedis 连接池大小)，其余任务的虚拟线程在信号量上等待，
+ * 等待的任务超过 maxWaiting 时按 {@link RejectPolicy} 处理。
+ * <p>
+ * Jedis、commons-pool 及 MySQL 驱动内部使用 synchronized，虚拟线程在其中阻塞时会占住载体线程(pinning)，
+ * maxConcurrency 同时也限制了被占住的载体线程数，不宜设置得比连接池大。
+ * 源码按 JDK 8 编译，虚拟线程的 API 通过反射调用。
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/24 10:30
+ **/
+@Slf4j
+public class VirtualThreadExecutor implements ManagedExecutor, DisposableBean {
+
+    private static final long REJECT_LOG_INTERVAL_MILLIS = 1000;
+
+    /**
+     * 虚拟线程工厂的创建方法，JDK 不支持或虚拟线程不可用时为 null
+     */
+    private static final Method OF_VIRTUAL = findOfVirtual();
+
+    @Getter
+    private final String name;
+
+    private final RejectPolicy rejectPolicy;
+    private final ThreadFactory threadFactory;
+    private final ResizableSemaphore permits;
+    private volatile int maxConcurrency;
+    private volatile int maxWaiting;
+
+    /**
+     * 已提交未完成的任务数，包括执行中和等待中的
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final LatencyHistogram waitTime = new LatencyHistogram();
+    private final LatencyHistogram executionTime = new LatencyHistogram();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final AtomicLong lastRejectLog = new AtomicLong();
+    private volatile boolean shutdown;
+
+    /**
+     * 关闭时等待已提交任务完成的最长时间(秒)
+     */
+    @Setter
+    private long awaitTerminationSeconds = 60;
+
+    /**
+     * @param name           名称，同时作为线程名前缀
+     * @param maxConcurrency 最多同时执行的任务数
+     * @param maxWaiting     最多等待执行的任务数
+     * @param rejectPolicy   等待的任务已满时的处理方式
+     */
+    public VirtualThreadExecutor(String name, int maxConcurrency, int maxWaiting, RejectPolicy rejectPolicy) {
+        if (!isSupported()) {
+            throw new IllegalStateException("当前 JDK " + System.getProperty("java.version") + " 不支持虚拟线程");
+        }
+        checkArguments(maxConcurrency, maxWaiting);
+        this.name = name;
+        this.maxConcurrency = maxConcurrency;
+        this.maxWaiting = maxWaiting;
+        this.rejectPolicy = rejectPolicy;
+        this.permits = new ResizableSemaphore(maxConcurrency);
+        this.threadFactory = newThreadFactory(OF_VIRTUAL, name + "-");
+    }
+
+    /**
+     * 当前 JDK 是否支持虚拟线程
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (shutdown) {
+            throw new RejectedExecutionException("执行器 " + name + " 已关闭");
+        }
+        if (inFlight.incrementAndGet() > maxConcurrency + maxWaiting) {
+            inFlight.decrementAndGet();
+            reject(command);
+            return;
+        }
+        try {
+            threadFactory.newThread(new LimitedTask(command)).start();
+        } catch (RuntimeException | Error e) {
+            inFlight.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * 调整同时执行的任务数及等待数，已在执行的任务不受影响
+     *
+     * @param corePoolSize  忽略，虚拟线程不需要常驻线程
+     * @param maxPoolSize   最多同时执行的任务数
+     * @param queueCapacity 最多等待执行的任务数
+     */
+    @Override
+    public synchronized void resize(int corePoolSize, int maxPoolSize, int queueCapacity) {
+        checkArguments(maxPoolSize, queueCapacity);
+        int delta = maxPoolSize - maxConcurrency;
+        if (delta > 0) {
+            permits.release(delta);
+        } else if (delta < 0) {
+            permits.reducePermits(-delta);
+        }
+        maxConcurrency = maxPoolSize;
+        maxWaiting = queueCapacity;
+        log.info("虚拟线程执行器 {} 调整为 maxConcurrency={}, maxWaiting={}",
+                new Object[]{name, maxPoolSize, queueCapacity});
+    }
+
+    /**
+     * 统计：running 执行中任务数, waiting 等待信号量的任务数, completed 已完成任务数, rejected 拒绝次数,
+     * failed 执行抛出异常次数, waitTime 等待信号量的时间, executionTime 执行时间
+     */
+    @Override
+    public Map<String, Object> stats() {
+        int runningCount = running.get();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("mode", "virtual");
+        map.put("maxConcurrency", maxConcurrency);
+        map.put("maxWaiting", maxWaiting);
+        map.put("running", runningCount);
+        map.put("waiting", Math.max(0, inFlight.get() - runningCount));
+        map.put("completed", completed.sum());
+        map.put("rejected", rejected.sum());
+        map.put("failed", failed.sum());
+        map.put("waitTime", waitTime.snapshot());
+        map.put("executionTime", executionTime.snapshot());
+        return map;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        shutdown = true;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(awaitTerminationSeconds);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        if (inFlight.get() > 0) {
+            log.warn("虚拟线程执行器 {} 在 {} 秒内未执行完，剩余 {} 个任务",
+                    new Object[]{name, awaitTerminationSeconds, inFlight.get()});
+        }
+    }
+
+    private void reject(Runnable command) {
+        rejected.increment();
+        long now = System.currentTimeMillis();
+        long last = lastRejectLog.get();
+        if (now - last >= REJECT_LOG_INTERVAL_MILLIS && lastRejectLog.compareAndSet(last, now)) {
+            log.warn("虚拟线程执行器 {} 已满，按 {} 处理，累计拒绝 {} 次", new Object[]{name, rejectPolicy, rejected.sum()});
+        }
+        switch (rejectPolicy) {
+            case CALLER_RUNS:
+                command.run();
+                return;
+            case DISCARD:
+                return;
+            default:
+                throw new RejectedExecutionException("虚拟线程执行器 " + name + " 已满");
+        }
+    }
+
+    private static void checkArguments(int maxConcurrency, int maxWaiting) {
+        if (maxConcurrency <= 0 || maxWaiting < 0) {
+            throw new IllegalArgumentException("虚拟线程执行器参数不合法：maxConcurrency=" + maxConcurrency
+                    + ", maxWaiting=" + maxWaiting);
+        }
+    }
+
+    /**
+     * JDK 19、20 中虚拟线程是预览功能，方法存在但未开启 --enable-preview 时调用抛出 UnsupportedOperationException，
+     * 因此实际创建并启动一个虚拟线程，成功才认为支持
+     */
+    private static Method findOfVirtual() {
+        Method ofVirtual;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+        try {
+            // 在类初始化期间执行，任务不能是本类的 lambda，否则新线程等待本类初始化完成而 join 永远等不到
+            Thread probe = newThreadFactory(ofVirtual, "virtual-thread-probe-").newThread(Thread::yield);
+            probe.start();
+            probe.join();
+            return ofVirtual;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (RuntimeException e) {
+            log.warn("当前 JDK {} 无法创建虚拟线程：{}", System.getProperty("java.version"), e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Thread.ofVirtual().name(prefix, 1).factory()
+     */
+    private static ThreadFactory newThreadFactory(Method ofVirtual, String prefix) {
+        try {
+            Object builder = ofVirtual.invoke(null);
+            Class<?> builderType = ofVirtual.getReturnType();
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 1L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("创建虚拟线程工厂失败", e);
+        }
+    }
+
+    private class LimitedTask implements Runnable {
+        private final Runnable task;
+        private final long submitted = System.nanoTime();
+
+        LimitedTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                permits.acquireUninterruptibly();
+                try {
+                    runTask();
+                } finally {
+                    permits.release();
+                }
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        private void runTask() {
+            long start = System.nanoTime();
+            waitTime.recordNanos(start - submitted);
+            running.incrementAndGet();
+            try {
+                task.run();
+            } catch (RuntimeException | Error e) {
+                // 虚拟线程没有线程池兜底，异常到这里为止
+                failed.increment();
+                log.error("虚拟线程执行器 {} 任务执行失败", name, e);
+            } finally {
+                running.decrementAndGet();
+                completed.increment();
+                executionTime.recordNanos(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * 可以减少许可数的信号量，减少后已发出的许可归还时才生效
+     */
+    private static class ResizableSemaphore extends Semaphore {
+        ResizableSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
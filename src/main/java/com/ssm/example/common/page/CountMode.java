@@ -0,0 +1,23 @@
+package com.ssm.example.common.page;
+
+/**
+ * 分页时总数的计算方式
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/21 9:30
+ **/
+public enum CountMode {
+    /**
+     * 不计算总数
+     */
+    NONE,
+    /**
+     * 估算，取 information_schema.tables 的 table_rows，不扫描表，误差可能达到 40%
+     */
+    ESTIMATED,
+    /**
+     * 精确计算，count(*)，大表上代价较高，结果会被缓存
+     */
+    EXACT
+}
@@ -0,0 +1,56 @@
+package com.ssm.example.common.page;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 键集分页的续页标识：上一页最后一行的排序键，编码为 URL 安全的 base64，调用方不需要理解其内容
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/21 9:40
+ **/
+public final class PageToken {
+
+    private PageToken() {
+    }
+
+    /**
+     * 编码排序键
+     *
+     * @param keys 排序键，按排序顺序
+     * @return token
+     */
+    public static String encode(Object... keys) {
+        byte[] json = JSON.toJSONString(keys).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+    }
+
+    /**
+     * 解码排序键
+     *
+     * @param token  token，为空表示第一页
+     * @param length 排序键个数
+     * @return 排序键，第一页返回 null
+     * @throws IllegalArgumentException token 不合法
+     */
+    public static JSONArray decode(String token, int length) {
+        if (StringUtils.isBlank(token)) {
+            return null;
+        }
+        JSONArray keys;
+        try {
+            keys = JSON.parseArray(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("分页标识不合法：" + token, e);
+        }
+        if (keys == null || keys.size() != length) {
+            throw new IllegalArgumentException("分页标识不合法：" + token);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,43 @@
+package com.ssm.example.common.page;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 键集分页结果
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/21 9:50
+ **/
+@Data
+public class SeekPage<T> {
+
+    /**
+     * 本页数据
+     */
+    private List<T> list;
+
+    /**
+     * 下一页的标识，没有下一页时为 null
+     */
+    private String nextToken;
+
+    /**
+     * 总数，CountMode.NONE 时为 null
+     */
+    private Long total;
+
+    /**
+     * 总数的计算方式
+     */
+    private CountMode countMode;
+
+    /**
+     * 是否有下一页
+     */
+    public boolean isHasMore() {
+        return nextToken != null;
+    }
+}
@@ -0,0 +1,21 @@
+package com.ssm.example.common.queue;
+
+/**
+ * 延时任务处理
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/15 9:50
+ **/
+@FunctionalInterface
+public interface DelayJobHandler {
+
+    /**
+     * 处理到期任务，抛出异常只记录失败，任务不会重新入队
+     *
+     * @param queueName 队列名
+     * @param job       任务内容
+     * @throws Exception 处理失败
+     */
+    void handle(String queueName, String job) throws Exception;
+}
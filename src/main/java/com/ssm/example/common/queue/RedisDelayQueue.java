@@ -0,0 +1,327 @@
+package com.ssm.example.common.queue;
+
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于 redis zset 的延时队列
+ * <p>
+ * score 为任务到期时间(毫秒)。每个队列一个调度线程：通过 lua 脚本原子地取出一批到期任务，
+ * 交给有界的工作线程池处理；没有到期任务时休眠到最早任务的到期时间，
+ * 有新任务入队(本节点或通过 redis 发布订阅通知的其他节点)时提前唤醒。
+ * <p>
+ * 关闭时先停止调度线程不再取任务，再等待工作线程处理完已取出的任务；
+ * 超时后仍未开始处理的任务按原到期时间放回队列，由其他节点或重启后处理。
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/15 10:05
+ **/
+@Slf4j
+public class RedisDelayQueue implements MessageListener, InitializingBean, DisposableBean {
+
+    /**
+     * 新任务入队通知频道，消息内容为队列名
+     */
+    public static final String CHANNEL = "delay-queue:notify";
+
+    /**
+     * 取出到期任务：返回 {最早未到期任务的score(没有则为-1), 任务1, score1, 任务2, score2 ...}
+     */
+    private static final RedisScript<List> CLAIM_SCRIPT = new DefaultRedisScript<>(
+            "local items = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'WITHSCORES', 'LIMIT', 0, ARGV[2]) " +
+                    "local result = {'-1'} " +
+                    "for i = 1, #items, 2 do " +
+                    "  redis.call('ZREM', KEYS[1], items[i]) " +
+                    "  result[#result + 1] = items[i] " +
+                    "  result[#result + 1] = items[i + 1] " +
+                    "end " +
+                    "local next = redis.call('ZRANGE', KEYS[1], 0, 0, 'WITHSCORES') " +
+                    "if next[2] then result[1] = next[2] end " +
+                    "return result", List.class);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 工作线程数
+     */
+    @Setter
+    private int workerThreads = 4;
+
+    /**
+     * 工作线程池队列长度，满了之后调度线程自己执行，从而放慢取任务的速度
+     */
+    @Setter
+    private int workerQueueCapacity = 1000;
+
+    /**
+     * 每次最多取出的任务数
+     */
+    @Setter
+    private int batchSize = 100;
+
+    /**
+     * 队列为空时最长休眠时间(毫秒)，用于兜底发现其他节点入队但通知丢失的任务
+     */
+    @Setter
+    private long maxIdleMillis = 5000;
+
+    /**
+     * 关闭时等待工作线程处理完已取出任务的最长时间(秒)
+     */
+    @Setter
+    private long awaitTerminationSeconds = 30;
+
+    private final Map<String, Dispatcher> dispatchers = new ConcurrentHashMap<>();
+    private final Map<String, QueueMetrics> metrics = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor workers;
+    private volatile boolean running = true;
+
+    @Override
+    public void afterPropertiesSet() {
+        AtomicInteger index = new AtomicInteger();
+        workers = new ThreadPoolExecutor(workerThreads, workerThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(workerQueueCapacity), r -> {
+            Thread thread = new Thread(r, "delay-queue-worker-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, (task, executor) -> {
+            // 关闭后调度线程可能还在提交，放回队列而不是丢弃
+            if (executor.isShutdown()) {
+                ((Dispatcher.ClaimedJob) task).requeue();
+            } else {
+                task.run();
+            }
+        });
+    }
+
+    /**
+     * 添加延时任务，同一个任务重复添加会覆盖到期时间
+     *
+     * @param queueName   队列名
+     * @param job         任务内容
+     * @param delayMillis 延迟时间(毫秒)
+     */
+    public void add(String queueName, String job, long delayMillis) {
+        stringRedisTemplate.opsForZSet().add(queueName, job, System.currentTimeMillis() + delayMillis);
+        metrics(queueName).added.increment();
+        Dispatcher local = dispatchers.get(queueName);
+        if (local != null) {
+            local.wakeUp();
+        }
+        stringRedisTemplate.convertAndSend(CHANNEL, queueName);
+    }
+
+    /**
+     * 订阅队列，到期任务交给 handler 处理，每个队列只能订阅一次
+     *
+     * @param queueName 队列名
+     * @param handler   任务处理
+     */
+    public void subscribe(String queueName, DelayJobHandler handler) {
+        Dispatcher dispatcher = new Dispatcher(queueName, handler);
+        if (dispatchers.putIfAbsent(queueName, dispatcher) != null) {
+            throw new IllegalStateException("延时队列已被订阅：" + queueName);
+        }
+        dispatcher.start();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Dispatcher dispatcher = dispatchers.get(new String(message.getBody(), StandardCharsets.UTF_8));
+        if (dispatcher != null) {
+            dispatcher.wakeUp();
+        }
+    }
+
+    /**
+     * 各队列统计：added 入队数, claimed 取出数, succeeded/failed 处理结果, requeued 关闭时放回队列数,
+     * lagAvgMillis/lagMaxMillis 实际处理时间与到期时间的差, size 当前队列长度
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        metrics.forEach((queueName, m) -> {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("subscribed", dispatchers.containsKey(queueName));
+            map.put("added", m.added.sum());
+            map.put("claimed", m.claimed.sum());
+            map.put("succeeded", m.succeeded.sum());
+            map.put("failed", m.failed.sum());
+            map.put("requeued", m.requeued.sum());
+            long handled = m.succeeded.sum() + m.failed.sum();
+            map.put("lagAvgMillis", handled == 0 ? 0 : m.lagTotal.sum() / handled);
+            map.put("lagMaxMillis", m.lagMax.get());
+            map.put("size", stringRedisTemplate.opsForZSet().zCard(queueName));
+            result.put(queueName, map);
+        });
+        return result;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        // 不中断调度线程，避免中断正在由调度线程执行的任务；唤醒后本轮结束即退出
+        running = false;
+        dispatchers.values().forEach(Dispatcher::wakeUp);
+        for (Dispatcher dispatcher : dispatchers.values()) {
+            dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        workers.shutdown();
+        if (!workers.awaitTermination(awaitTerminationSeconds, TimeUnit.SECONDS)) {
+            List<Runnable> unstarted = workers.shutdownNow();
+            unstarted.forEach(task -> ((Dispatcher.ClaimedJob) task).requeue());
+            log.warn("延时队列工作线程未在{}秒内结束，{}个未开始的任务已放回队列",
+                    awaitTerminationSeconds, unstarted.size());
+        }
+    }
+
+    private QueueMetrics metrics(String queueName) {
+        return metrics.computeIfAbsent(queueName, k -> new QueueMetrics());
+    }
+
+    private class Dispatcher extends Thread {
+        private final String queueName;
+        private final DelayJobHandler handler;
+        private final QueueMetrics queueMetrics;
+        private final Semaphore signal = new Semaphore(0);
+
+        Dispatcher(String queueName, DelayJobHandler handler) {
+            super("delay-queue-" + queueName);
+            setDaemon(true);
+            this.queueName = queueName;
+            this.handler = handler;
+            this.queueMetrics = metrics(queueName);
+        }
+
+        void wakeUp() {
+            signal.release();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                long waitMillis;
+                try {
+                    waitMillis = dispatchOnce();
+                } catch (Exception e) {
+                    // redis 异常时退避，防止线程退出
+                    log.error("延时队列{}获取任务失败", queueName, e);
+                    waitMillis = maxIdleMillis;
+                }
+                if (waitMillis <= 0) {
+                    continue;
+                }
+                try {
+                    if (running) {
+                        signal.tryAcquire(waitMillis, TimeUnit.MILLISECONDS);
+                        signal.drainPermits();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return 下次取任务前需要等待的时间(毫秒)
+         */
+        @SuppressWarnings("unchecked")
+        private long dispatchOnce() {
+            long now = System.currentTimeMillis();
+            List<String> result = stringRedisTemplate.execute(CLAIM_SCRIPT, Collections.singletonList(queueName),
+                    String.valueOf(now), String.valueOf(batchSize));
+            int claimed = (result.size() - 1) / 2;
+            queueMetrics.claimed.add(claimed);
+            for (int i = 1; i + 1 < result.size(); i += 2) {
+                String job = result.get(i);
+                long dueTime = (long) Double.parseDouble(result.get(i + 1));
+                workers.execute(new ClaimedJob(job, dueTime));
+            }
+            if (claimed >= batchSize) {
+                // 可能还有到期任务，立即继续
+                return 0;
+            }
+            long nextDueTime = (long) Double.parseDouble(result.get(0));
+            if (nextDueTime < 0) {
+                return maxIdleMillis;
+            }
+            return Math.min(Math.max(nextDueTime - System.currentTimeMillis(), 1), maxIdleMillis);
+        }
+
+        private void handle(String job, long dueTime) {
+            long lag = Math.max(System.currentTimeMillis() - dueTime, 0);
+            queueMetrics.lagTotal.add(lag);
+            queueMetrics.lagMax.accumulateAndGet(lag, Math::max);
+            try {
+                handler.handle(queueName, job);
+                queueMetrics.succeeded.increment();
+            } catch (Exception e) {
+                queueMetrics.failed.increment();
+                log.error("延时队列{}任务处理失败：{}", new Object[]{queueName, job, e});
+            }
+        }
+
+        /**
+         * 已从 zset 取出、交给工作线程的任务
+         */
+        private class ClaimedJob implements Runnable {
+            private final String job;
+            private final long dueTime;
+
+            ClaimedJob(String job, long dueTime) {
+                this.job = job;
+                this.dueTime = dueTime;
+            }
+
+            @Override
+            public void run() {
+                handle(job, dueTime);
+            }
+
+            /**
+             * 按原到期时间放回队列
+             */
+            void requeue() {
+                try {
+                    stringRedisTemplate.opsForZSet().add(queueName, job, dueTime);
+                    queueMetrics.requeued.increment();
+                } catch (Exception e) {
+                    log.error("延时队列{}任务放回失败：{}", new Object[]{queueName, job, e});
+                }
+            }
+        }
+    }
+
+    private static class QueueMetrics {
+        private final LongAdder added = new LongAdder();
+        private final LongAdder claimed = new LongAdder();
+        private final LongAdder succeeded = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder requeued = new LongAdder();
+        private final LongAdder lagTotal = new LongAdder();
+        private final AtomicLong lagMax = new AtomicLong();
+    }
+}
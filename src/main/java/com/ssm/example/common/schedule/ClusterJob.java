@@ -0,0 +1,72 @@
+package com.ssm.example.common.schedule;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 集群定时任务：与 {@code @Scheduled(cron = ...)} 一起使用，每次触发在所有节点中只执行一次
+ * <p>
+ * 各节点按 cron 计算本次触发的计划时间，通过 redis 原子地推进该任务的最后触发时间，推进成功的节点执行；
+ * 执行期间持有租约锁并定期续期，上一次还没执行完(任一节点)时本次跳过。
+ * 设置 shards 大于1时每次触发拆分为多个分片，由所有存活节点争抢执行，方法内通过 {@link ShardContext#current()} 获取分片号。
+ * <pre>
+ * &#64;ClusterJob(shards = 4)
+ * &#64;Scheduled(cron = "0 0 2 * * ?")
+ * public void settle() {
+ *     ShardContext shard = ShardContext.current();
+ *     // 处理 id % shard.getShardCount() == shard.getShardIndex() 的数据
+ * }
+ * </pre>
+ * redis 不可用时不执行(宁可漏跑也不重复执行)。
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/24 14:00
+ **/
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ClusterJob {
+
+    /**
+     * 任务名，同名任务在集群中互斥，默认为 类名.方法名
+     */
+    String name() default "";
+
+    /**
+     * 租约时间(秒)，持有者崩溃后最多这么久其他节点才能执行；执行期间每 1/3 租期续期一次
+     */
+    long leaseSeconds() default 300;
+
+    /**
+     * 实际触发晚于计划时间超过该值(秒)视为错过触发(misfire)，按 {@link #misfire()} 处理
+     */
+    long misfireThresholdSeconds() default 10;
+
+    /**
+     * 错过触发时的处理方式
+     */
+    MisfirePolicy misfire() default MisfirePolicy.DO_NOTHING;
+
+    /**
+     * 分片数，大于1时每次触发拆分为多个分片在各节点上执行
+     */
+    int shards() default 1;
+
+    /**
+     * 错过触发的处理方式
+     */
+    enum MisfirePolicy {
+        /**
+         * 不补执行，等待下一次触发
+         */
+        DO_NOTHING,
+        /**
+         * 补执行一次：错过多次也只补一次，节点启动时检查所有节点都停机期间错过的触发
+         */
+        FIRE_ONCE_NOW
+    }
+}
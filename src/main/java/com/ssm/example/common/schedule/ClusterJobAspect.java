@@ -0,0 +1,451 @@
+package com.ssm.example.common.schedule;
+
+import com.ssm.example.common.metrics.LatencyHistogram;
+import com.ssm.example.common.utils.RedisCache;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.EmbeddedValueResolverAware;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronSequenceGenerator;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringValueResolver;
+
+import javax.annotation.Resource;
+import java.lang.reflect.Method;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link ClusterJob} 的切面实现，基于 {@link RedisCache}
+ * <p>
+ * redis 中每个任务保存：job:名称:fire 最后一次被领取的计划触发时间(单调递增)，job:名称:lock 执行中的租约锁
+ * (分片任务为参与本次触发的各节点共同持有的租约)，job:名称:shard:触发时间 已领取的分片数。
+ * 各节点的调度器照常按 cron 触发，由本切面决定是否真正执行，因此节点间时钟需要同步(允许1秒偏差)。
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/24 14:30
+ **/
+@Slf4j
+@Aspect
+@Order(ScheduledJobAspect.ORDER + 1)
+public class ClusterJobAspect implements ApplicationContextAware, EmbeddedValueResolverAware,
+        ApplicationListener<ContextRefreshedEvent>, DisposableBean {
+
+    private static final String KEY_PREFIX = "job:";
+
+    /**
+     * 允许的节点间时钟偏差及调度器提前触发的时间(毫秒)
+     */
+    private static final long CLOCK_SKEW_MILLIS = 1000;
+
+    /**
+     * 查找错过的触发时最多向后推算的次数
+     */
+    private static final int MAX_FIRE_LOOKUP = 10000;
+
+    @Resource
+    private RedisCache redisCache;
+
+    private ApplicationContext applicationContext;
+
+    private StringValueResolver valueResolver;
+
+    private final Map<Method, Job> jobs = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService leaseRenewer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "cluster-job-lease");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 启动时补执行错过的触发，不占用调度线程
+     */
+    private final ExecutorService catchUp = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "cluster-job-catch-up");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) {
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void setEmbeddedValueResolver(StringValueResolver resolver) {
+        this.valueResolver = resolver;
+    }
+
+    @Around("@annotation(clusterJob)")
+    public Object run(ProceedingJoinPoint point, ClusterJob clusterJob) throws Throwable {
+        Method method = ((MethodSignature) point.getSignature()).getMethod();
+        Job job = job(AopUtils.getTargetClass(point.getTarget()), method, clusterJob);
+        job.fired.increment();
+        long now = System.currentTimeMillis();
+        long fireTime;
+        try {
+            fireTime = dueFireTime(job, now);
+        } catch (RuntimeException e) {
+            job.failures.increment();
+            log.error("集群任务 {} 读取触发状态失败，本次不执行", job.name, e);
+            return null;
+        }
+        if (fireTime <= 0) {
+            if (fireTime == 0) {
+                job.skipped.increment();
+            }
+            return null;
+        }
+        job.lag.recordMillis(now - fireTime);
+        return job.shards > 1 ? runShards(point, job, fireTime) : runExclusive(point, job, fireTime);
+    }
+
+    /**
+     * 启动时登记所有集群任务，检查 cron 配置，并补执行所有节点都停机期间错过的触发
+     */
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        // 子容器刷新的事件也会发布到父容器
+        if (event.getApplicationContext() != applicationContext) {
+            return;
+        }
+        for (String beanName : applicationContext.getBeanNamesForType(Object.class, false, false)) {
+            Class<?> type = applicationContext.getType(beanName);
+            if (type == null) {
+                continue;
+            }
+            Class<?> userClass = ClassUtils.getUserClass(type);
+            ReflectionUtils.doWithMethods(userClass, method -> {
+                Job job = job(userClass, method, AnnotationUtils.findAnnotation(method, ClusterJob.class));
+                log.info("集群任务 {}：cron={}，分片 {}，错过触发时 {}", new Object[]{job.name, job.cronExpression,
+                        job.shards, job.misfirePolicy});
+                if (job.misfirePolicy == ClusterJob.MisfirePolicy.FIRE_ONCE_NOW) {
+                    catchUpIfMissed(job, beanName, method);
+                }
+            }, method -> AnnotationUtils.findAnnotation(method, ClusterJob.class) != null);
+        }
+    }
+
+    /**
+     * 各任务统计：fired 本节点触发次数, runs 本节点执行次数(分片任务按分片计), skipped 已被其他节点执行,
+     * overlapped 上一次还没执行完而跳过, misfires 错过触发, failures 执行失败或 redis 不可用,
+     * lastFireTime 本节点最后执行的计划触发时间, runTime 执行时间, lag 实际触发与计划触发的时间差
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new TreeMap<>();
+        for (Job job : jobs.values()) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("cron", job.cronExpression);
+            map.put("shards", job.shards);
+            map.put("fired", job.fired.sum());
+            map.put("runs", job.runs.sum());
+            map.put("skipped", job.skipped.sum());
+            map.put("overlapped", job.overlapped.sum());
+            map.put("misfires", job.misfires.sum());
+            map.put("failures", job.failures.sum());
+            map.put("lastFireTime", job.lastFireTime > 0 ? new Date(job.lastFireTime) : null);
+            map.put("runTime", job.runTime.snapshot());
+            map.put("lag", job.lag.snapshot());
+            result.put(job.name, map);
+        }
+        return result;
+    }
+
+    @Override
+    public void destroy() {
+        catchUp.shutdownNow();
+        leaseRenewer.shutdownNow();
+    }
+
+    /**
+     * 本次应执行的计划触发时间，没有需要执行的触发(已被其他节点执行)时返回0，错过触发且不补执行时返回-1
+     */
+    private long dueFireTime(Job job, long now) {
+        long fireTime = latestFireTime(job.cron, now - job.misfireThresholdMillis, now + CLOCK_SKEW_MILLIS);
+        if (fireTime > 0) {
+            return fireTime;
+        }
+        // 触发晚于计划时间超过阈值：调度线程被占用，或者是启动时的补执行
+        if (job.misfirePolicy == ClusterJob.MisfirePolicy.DO_NOTHING) {
+            job.misfires.increment();
+            log.warn("集群任务 {} 错过了触发，按 DO_NOTHING 不补执行", job.name);
+            return -1;
+        }
+        long last = redisCache.advance(job.fireKey, 0);
+        if (last <= 0) {
+            return 0;
+        }
+        // 分片任务的各节点都要找到同一次触发，包括已被领取的
+        fireTime = latestFireTime(job.cron, job.shards > 1 ? last : last + 1, now + CLOCK_SKEW_MILLIS);
+        if (fireTime > 0) {
+            job.misfires.increment();
+            log.warn("集群任务 {} 错过了 {} 的触发，补执行一次", job.name, new Date(fireTime));
+        }
+        return fireTime;
+    }
+
+    private Object runExclusive(ProceedingJoinPoint point, Job job, long fireTime) throws Throwable {
+        String token;
+        try {
+            if (redisCache.advance(job.fireKey, fireTime) >= fireTime) {
+                job.skipped.increment();
+                return null;
+            }
+            token = redisCache.tryLock(job.lockKey, job.leaseMillis);
+        } catch (RuntimeException e) {
+            job.failures.increment();
+            log.error("集群任务 {} 领取触发失败，本次不执行", job.name, e);
+            return null;
+        }
+        if (token == null) {
+            job.overlapped.increment();
+            log.warn("集群任务 {} 上一次还没执行完，跳过 {} 的触发", job.name, new Date(fireTime));
+            return null;
+        }
+        long period = job.leaseMillis / 3;
+        ScheduledFuture<?> renewal = leaseRenewer.scheduleAtFixedRate(() -> renew(job, token, false), period, period,
+                TimeUnit.MILLISECONDS);
+        try {
+            return execute(point, job, fireTime, 0, 1);
+        } finally {
+            renewal.cancel(false);
+            unlock(job, token, false);
+        }
+    }
+
+    /**
+     * 循环领取分片直到领完(每个节点最多领取 shards 次)，执行快的节点领得多；某个分片失败不影响其他分片
+     * <p>
+     * 参与本次触发的节点共同持有租约，上一次触发还有节点在执行时本次跳过。
+     * 分片计数保留到下一次触发之后，执行期间随租约续期，不会过期后从第一个分片重新领取。
+     */
+    private Object runShards(ProceedingJoinPoint point, Job job, long fireTime) {
+        String shardKey = job.shardKeyPrefix + fireTime;
+        long shardKeySeconds = TimeUnit.MILLISECONDS.toSeconds(job.cron.next(new Date(fireTime)).getTime() - fireTime
+                + job.leaseMillis + job.misfireThresholdMillis) + 1;
+        String token;
+        try {
+            // 记录最后触发时间，用于发现错过的触发
+            redisCache.advance(job.fireKey, fireTime);
+            token = redisCache.tryLockShared(job.lockKey, String.valueOf(fireTime), job.leaseMillis);
+        } catch (RuntimeException e) {
+            job.failures.increment();
+            log.error("集群任务 {} 领取触发失败，本次不执行", job.name, e);
+            return null;
+        }
+        if (token == null) {
+            job.overlapped.increment();
+            log.warn("集群任务 {} 上一次还没执行完，跳过 {} 的触发", job.name, new Date(fireTime));
+            return null;
+        }
+        long period = job.leaseMillis / 3;
+        ScheduledFuture<?> renewal = leaseRenewer.scheduleAtFixedRate(() -> {
+            renew(job, token, true);
+            renewShardKey(job, shardKey, shardKeySeconds);
+        }, period, period, TimeUnit.MILLISECONDS);
+        int executed = 0;
+        try {
+            for (int claims = 0; claims < job.shards; claims++) {
+                long shard;
+                try {
+                    shard = redisCache.incrAndExpire(shardKey, 1, shardKeySeconds);
+                } catch (RuntimeException e) {
+                    job.failures.increment();
+                    log.error("集群任务 {} 领取分片失败", job.name, e);
+                    break;
+                }
+                if (shard > job.shards) {
+                    break;
+                }
+                executed++;
+                try {
+                    execute(point, job, fireTime, (int) shard - 1, job.shards);
+                } catch (Throwable e) {
+                    log.error("集群任务 {} 分片 {}/{} 执行失败", new Object[]{job.name, shard - 1, job.shards, e});
+                }
+            }
+        } finally {
+            renewal.cancel(false);
+            unlock(job, token, true);
+        }
+        if (executed == 0) {
+            job.skipped.increment();
+        }
+        return null;
+    }
+
+    private Object execute(ProceedingJoinPoint point, Job job, long fireTime, int shardIndex, int shardCount)
+            throws Throwable {
+        ShardContext previous = ShardContext.current();
+        ShardContext.set(new ShardContext(job.name, fireTime, shardIndex, shardCount));
+        long start = System.nanoTime();
+        try {
+            return point.proceed();
+        } catch (Throwable e) {
+            job.failures.increment();
+            throw e;
+        } finally {
+            job.runs.increment();
+            job.runTime.recordNanos(System.nanoTime() - start);
+            job.lastFireTime = fireTime;
+            ShardContext.set(previous);
+        }
+    }
+
+    private void renew(Job job, String token, boolean shared) {
+        try {
+            boolean renewed = shared ? redisCache.renewShared(job.lockKey, token, job.leaseMillis)
+                    : redisCache.renewLock(job.lockKey, token, job.leaseMillis);
+            if (!renewed) {
+                log.warn("集群任务 {} 的租约已过期，其他节点可能同时执行", job.name);
+            }
+        } catch (RuntimeException e) {
+            log.warn("集群任务 {} 续期失败", job.name, e);
+        }
+    }
+
+    private void renewShardKey(Job job, String shardKey, long shardKeySeconds) {
+        try {
+            redisCache.incrAndExpire(shardKey, 0, shardKeySeconds);
+        } catch (RuntimeException e) {
+            log.warn("集群任务 {} 分片计数续期失败", job.name, e);
+        }
+    }
+
+    private void unlock(Job job, String token, boolean shared) {
+        try {
+            if (shared) {
+                redisCache.unlockShared(job.lockKey, token);
+            } else {
+                redisCache.unlock(job.lockKey, token);
+            }
+        } catch (RuntimeException e) {
+            log.warn("集群任务 {} 释放租约失败，将在租约到期后释放", job.name, e);
+        }
+    }
+
+    private void catchUpIfMissed(Job job, String beanName, Method method) {
+        long last;
+        try {
+            last = redisCache.advance(job.fireKey, 0);
+        } catch (RuntimeException e) {
+            log.warn("集群任务 {} 读取最后触发时间失败，不检查错过的触发", job.name, e);
+            return;
+        }
+        Date next = last > 0 ? job.cron.next(new Date(last)) : null;
+        if (next == null || next.getTime() >= System.currentTimeMillis() - job.misfireThresholdMillis) {
+            return;
+        }
+        // 通过代理调用，与调度器触发一样经过本切面领取
+        catchUp.execute(() -> {
+            try {
+                ReflectionUtils.invokeMethod(method, applicationContext.getBean(beanName));
+            } catch (RuntimeException e) {
+                log.error("集群任务 {} 补执行失败", job.name, e);
+            }
+        });
+    }
+
+    private Job job(Class<?> targetClass, Method method, ClusterJob clusterJob) {
+        Job job = jobs.get(method);
+        if (job == null) {
+            job = jobs.computeIfAbsent(method, key -> new Job(targetClass, method, clusterJob));
+        }
+        return job;
+    }
+
+    /**
+     * from 到 to 之间(含)最晚的一次触发时间，没有时返回0
+     */
+    private static long latestFireTime(CronSequenceGenerator cron, long from, long to) {
+        // cron 精确到秒，next 返回严格晚于所给时间(忽略毫秒)的触发时间
+        long fromSecond = (from + 999) / 1000 * 1000;
+        Date fire = cron.next(new Date(fromSecond - 1000));
+        if (fire.getTime() > to) {
+            return 0;
+        }
+        for (int i = 0; i < MAX_FIRE_LOOKUP; i++) {
+            Date next = cron.next(fire);
+            if (next.getTime() > to) {
+                break;
+            }
+            fire = next;
+        }
+        return fire.getTime();
+    }
+
+    private class Job {
+        private final String name;
+        private final String cronExpression;
+        private final CronSequenceGenerator cron;
+        private final long leaseMillis;
+        private final long misfireThresholdMillis;
+        private final ClusterJob.MisfirePolicy misfirePolicy;
+        private final int shards;
+        private final String fireKey;
+        private final String lockKey;
+        private final String shardKeyPrefix;
+
+        private final LongAdder fired = new LongAdder();
+        private final LongAdder runs = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder overlapped = new LongAdder();
+        private final LongAdder misfires = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LatencyHistogram runTime = new LatencyHistogram();
+        private final LatencyHistogram lag = new LatencyHistogram();
+        private volatile long lastFireTime;
+
+        Job(Class<?> targetClass, Method method, ClusterJob clusterJob) {
+            this.name = StringUtils.isNotBlank(clusterJob.name()) ? clusterJob.name()
+                    : ClassUtils.getUserClass(targetClass).getSimpleName() + "." + method.getName();
+            Scheduled scheduled = AnnotationUtils.findAnnotation(method, Scheduled.class);
+            if (scheduled == null || StringUtils.isBlank(scheduled.cron())) {
+                throw new IllegalStateException("集群任务 " + name + " 需要配置 @Scheduled(cron = ...)");
+            }
+            if (clusterJob.leaseSeconds() < 3 || clusterJob.shards() < 1) {
+                throw new IllegalStateException("集群任务 " + name + " 的 leaseSeconds 不能小于3，shards 不能小于1");
+            }
+            this.cronExpression = resolve(scheduled.cron());
+            String zone = resolve(scheduled.zone());
+            this.cron = new CronSequenceGenerator(cronExpression,
+                    StringUtils.isBlank(zone) ? TimeZone.getDefault() : TimeZone.getTimeZone(zone));
+            this.leaseMillis = TimeUnit.SECONDS.toMillis(clusterJob.leaseSeconds());
+            this.misfireThresholdMillis = TimeUnit.SECONDS.toMillis(clusterJob.misfireThresholdSeconds());
+            this.misfirePolicy = clusterJob.misfire();
+            this.shards = clusterJob.shards();
+            this.fireKey = KEY_PREFIX + name + ":fire";
+            this.lockKey = KEY_PREFIX + name + ":lock";
+            this.shardKeyPrefix = KEY_PREFIX + name + ":shard:";
+        }
+
+        private String resolve(String value) {
+            return valueResolver == null ? value.trim() : valueResolver.resolveStringValue(value).trim();
+        }
+    }
+}
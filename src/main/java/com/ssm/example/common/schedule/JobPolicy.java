@@ -0,0 +1,53 @@
+package com.ssm.example.common.schedule;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 定时任务在本节点上的执行策略，与 {@code @Scheduled} 一起使用，未配置时按默认值处理
+ * <p>
+ * 同一个任务上一次还没执行完时又触发(执行超过 cron 间隔，或方法同时标注了 {@code @Async})按 {@link #overlap()} 处理。
+ * jitterMillis 大于0时每次执行前随机等待，避免多个任务或多个节点在同一时刻集中执行；等待期间占用调度线程。
+ * 与 {@link ClusterJob} 一起使用时 jitterMillis 要小于 misfireThresholdSeconds。
+ * <pre>
+ * &#64;JobPolicy(overlap = JobPolicy.Overlap.COALESCE, jitterMillis = 2000)
+ * &#64;Scheduled(cron = "0 0/5 * * * ?")
+ * public void sync()
+ * </pre>
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/24 16:00
+ **/
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface JobPolicy {
+
+    /**
+     * 上一次还没执行完时又触发的处理方式
+     */
+    Overlap overlap() default Overlap.SKIP;
+
+    /**
+     * 执行前随机等待的最长时间(毫秒)，0 表示不等待
+     */
+    long jitterMillis() default 0;
+
+    /**
+     * 重叠触发的处理方式
+     */
+    enum Overlap {
+        /**
+         * 跳过本次触发
+         */
+        SKIP,
+        /**
+         * 执行中的所有触发合并为一次，在当前执行结束后立即补执行
+         */
+        COALESCE
+    }
+}
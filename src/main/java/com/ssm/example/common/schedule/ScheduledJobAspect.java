@@ -0,0 +1,248 @@
+package com.ssm.example.common.schedule;
+
+import com.ssm.example.common.metrics.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.EmbeddedValueResolverAware;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronSequenceGenerator;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringValueResolver;
+
+import java.lang.reflect.Method;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 所有 {@code @Scheduled} 方法的执行统计及 {@link JobPolicy} 的实现
+ * <p>
+ * 在 {@link ClusterJobAspect} 之外执行：先在本节点判断重叠、随机等待，再到集群中领取触发。
+ * 同步执行的 cron 任务，执行期间错过的触发由 Spring 直接丢弃，这里按 cron 推算出来计入 overlapped，
+ * COALESCE 时执行结束后补执行一次。
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/24 16:10
+ **/
+@Slf4j
+@Aspect
+@Order(ScheduledJobAspect.ORDER)
+public class ScheduledJobAspect implements EmbeddedValueResolverAware, ApplicationListener<ContextClosedEvent> {
+
+    public static final int ORDER = Ordered.HIGHEST_PRECEDENCE;
+
+    /**
+     * 推算执行期间错过的触发次数时最多计算的次数
+     */
+    private static final int MAX_MISSED_LOOKUP = 1000;
+
+    private StringValueResolver valueResolver;
+
+    private final Map<Method, Job> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * 容器关闭中，不再补执行被合并的触发，调度线程池才能按时关闭
+     */
+    private volatile boolean closing;
+
+    @Override
+    public void setEmbeddedValueResolver(StringValueResolver resolver) {
+        this.valueResolver = resolver;
+    }
+
+    @Override
+    public void onApplicationEvent(ContextClosedEvent event) {
+        closing = true;
+    }
+
+    @Around("@annotation(org.springframework.scheduling.annotation.Scheduled)")
+    public Object run(ProceedingJoinPoint point) throws Throwable {
+        Method method = ((MethodSignature) point.getSignature()).getMethod();
+        Job job = job(AopUtils.getTargetClass(point.getTarget()), method);
+        job.fired.increment();
+        if (!job.running.compareAndSet(false, true)) {
+            job.overlapped.increment();
+            job.overlapsInRun.incrementAndGet();
+            if (job.overlap == JobPolicy.Overlap.COALESCE) {
+                job.pending = true;
+                job.coalesced.increment();
+            } else {
+                log.warn("定时任务 {} 上一次还没执行完，跳过本次触发", job.name);
+            }
+            return null;
+        }
+        if (!jitter(job)) {
+            job.running.set(false);
+            return null;
+        }
+        Object result;
+        do {
+            try {
+                do {
+                    job.pending = false;
+                    result = execute(point, job);
+                } while (job.pending && !closing);
+            } finally {
+                job.running.set(false);
+            }
+            // 释放标记前后又有触发被合并时，由当前线程继续执行
+        } while (job.pending && !closing && job.running.compareAndSet(false, true));
+        return result;
+    }
+
+    /**
+     * 各任务统计：fired 触发次数, executions 执行次数, failures 执行抛出异常次数,
+     * overlapped 上一次还没执行完时的触发次数(含按 cron 推算的), coalesced 被合并补执行的触发次数,
+     * running 是否正在执行, lastStart 最后一次开始时间, lastDurationMillis 最后一次执行耗时, runTime 执行时间
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new TreeMap<>();
+        for (Job job : jobs.values()) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("overlap", job.overlap);
+            map.put("jitterMillis", job.jitterMillis);
+            map.put("fired", job.fired.sum());
+            map.put("executions", job.executions.sum());
+            map.put("failures", job.failures.sum());
+            map.put("overlapped", job.overlapped.sum());
+            map.put("coalesced", job.coalesced.sum());
+            map.put("running", job.running.get());
+            map.put("lastStart", job.lastStart > 0 ? new Date(job.lastStart) : null);
+            map.put("lastDurationMillis", job.lastDurationMillis);
+            map.put("runTime", job.runTime.snapshot());
+            result.put(job.name, map);
+        }
+        return result;
+    }
+
+    private Object execute(ProceedingJoinPoint point, Job job) throws Throwable {
+        job.overlapsInRun.set(0);
+        long startMillis = System.currentTimeMillis();
+        long start = System.nanoTime();
+        job.lastStart = startMillis;
+        try {
+            return point.proceed();
+        } catch (Throwable e) {
+            job.failures.increment();
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            job.executions.increment();
+            job.runTime.recordNanos(elapsed);
+            job.lastDurationMillis = elapsed / 1000000;
+            countMissedFires(job, startMillis, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * 同步执行超过 cron 间隔时，Spring 丢弃期间的触发，不会再调用本切面，按 cron 推算
+     */
+    private void countMissedFires(Job job, long startMillis, long endMillis) {
+        if (job.cron == null) {
+            return;
+        }
+        int missed = 0;
+        Date fire = job.cron.next(new Date(startMillis));
+        while (fire.getTime() < endMillis && missed < MAX_MISSED_LOOKUP) {
+            missed++;
+            fire = job.cron.next(fire);
+        }
+        // 异步执行时重叠的触发已经调用过本切面并计数
+        int uncounted = missed - job.overlapsInRun.get();
+        if (uncounted <= 0) {
+            return;
+        }
+        job.overlapped.add(uncounted);
+        if (job.overlap == JobPolicy.Overlap.COALESCE) {
+            job.pending = true;
+            job.coalesced.add(uncounted);
+        } else {
+            log.warn("定时任务 {} 执行耗时 {}ms，跳过期间的 {} 次触发", new Object[]{job.name,
+                    endMillis - startMillis, uncounted});
+        }
+    }
+
+    /**
+     * 随机等待，线程被中断(容器关闭)时返回 false，不再执行
+     */
+    private boolean jitter(Job job) {
+        if (job.jitterMillis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(job.jitterMillis + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Job job(Class<?> targetClass, Method method) {
+        Job job = jobs.get(method);
+        if (job == null) {
+            job = jobs.computeIfAbsent(method, key -> new Job(targetClass, method));
+        }
+        return job;
+    }
+
+    private class Job {
+        private final String name;
+        private final JobPolicy.Overlap overlap;
+        private final long jitterMillis;
+        /**
+         * cron 任务的触发时间，fixedRate/fixedDelay 任务为 null
+         */
+        private final CronSequenceGenerator cron;
+
+        private final AtomicBoolean running = new AtomicBoolean();
+        private final AtomicInteger overlapsInRun = new AtomicInteger();
+        private volatile boolean pending;
+        private final LongAdder fired = new LongAdder();
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder overlapped = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+        private final LatencyHistogram runTime = new LatencyHistogram();
+        private volatile long lastStart;
+        private volatile long lastDurationMillis;
+
+        Job(Class<?> targetClass, Method method) {
+            this.name = ClassUtils.getUserClass(targetClass).getSimpleName() + "." + method.getName();
+            JobPolicy policy = AnnotationUtils.findAnnotation(method, JobPolicy.class);
+            this.overlap = policy == null ? JobPolicy.Overlap.SKIP : policy.overlap();
+            this.jitterMillis = policy == null ? 0 : policy.jitterMillis();
+            Scheduled scheduled = AnnotationUtils.findAnnotation(method, Scheduled.class);
+            String cronExpression = scheduled == null ? "" : resolve(scheduled.cron());
+            if (StringUtils.isBlank(cronExpression)) {
+                this.cron = null;
+            } else {
+                String zone = resolve(scheduled.zone());
+                this.cron = new CronSequenceGenerator(cronExpression,
+                        StringUtils.isBlank(zone) ? TimeZone.getDefault() : TimeZone.getTimeZone(zone));
+            }
+        }
+
+        private String resolve(String value) {
+            return valueResolver == null ? value.trim() : valueResolver.resolveStringValue(value).trim();
+        }
+    }
+}
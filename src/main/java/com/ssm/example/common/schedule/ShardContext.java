@@ -0,0 +1,63 @@
+package com.ssm.example.common.schedule;
+
+import lombok.Getter;
+
+/**
+ * 当前线程正在执行的集群任务分片，只在 {@link ClusterJob} 方法内有效
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/24 14:10
+ **/
+@Getter
+public final class ShardContext {
+
+    private static final ThreadLocal<ShardContext> CURRENT = new ThreadLocal<>();
+
+    /**
+     * 任务名
+     */
+    private final String jobName;
+
+    /**
+     * 本次触发的计划时间(毫秒)，同一次触发的各分片相同
+     */
+    private final long fireTime;
+
+    /**
+     * 分片号，从0开始
+     */
+    private final int shardIndex;
+
+    /**
+     * 分片总数
+     */
+    private final int shardCount;
+
+    ShardContext(String jobName, long fireTime, int shardIndex, int shardCount) {
+        this.jobName = jobName;
+        this.fireTime = fireTime;
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * 当前分片，不在集群任务中时返回 null；未分片的任务返回 0/1
+     */
+    public static ShardContext current() {
+        return CURRENT.get();
+    }
+
+    static void set(ShardContext context) {
+        if (context == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(context);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return jobName + "@" + fireTime + "[" + shardIndex + "/" + shardCount + "]";
+    }
+}
@@ -0,0 +1,211 @@
+package com.ssm.example.common.serializer;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.pool.KryoPool;
+import com.esotericsoftware.kryo.serializers.CompatibleFieldSerializer;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.apache.commons.lang3.StringUtils;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.util.ClassUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ObjectInputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 紧凑的 redis 值序列化：字符串原样保存(不压缩)，其他对象使用 Kryo 二进制编码，超过阈值时 LZ4 压缩
+ * <p>
+ * 格式：
+ * <pre>
+ * 字符串                UTF-8 字节(与 StringRedisSerializer 相同，INCR/lua 脚本可直接使用)，无论长短都不压缩
+ * 其他                  0x00 | 头部 | [原始长度(4字节，压缩时)] | 数据
+ * 头部                  低4位为类型(1 字符串, 2 Kryo)，0x10 表示 LZ4 压缩
+ * </pre>
+ * 以 \u0000 开头的字符串按"其他"格式保存，以免与对象混淆。
+ * 读取时兼容旧数据：不以 0x00 开头的按字符串读取，JDK 序列化的数据(0xACED 开头)按 JDK 方式反序列化。
+ * Kryo 对象的类型标识默认为类名，registeredClasses 中注册的类只写一个整数ID，
+ * 注册顺序决定ID，各节点必须一致，只能在末尾追加。
+ * 对象字段使用 CompatibleFieldSerializer 按字段名写入，类增删字段后仍能读取旧数据；
+ * 无法反序列化的数据(例如类已改名)记录日志后按未命中返回 null。
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/19 10:15
+ **/
+@Slf4j
+public class CompactRedisSerializer implements RedisSerializer<Object>, InitializingBean {
+
+    static final byte MAGIC = 0x00;
+    static final int TYPE_STRING = 0x01;
+    static final int TYPE_KRYO = 0x02;
+    static final int TYPE_MASK = 0x0F;
+    static final int FLAG_LZ4 = 0x10;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    /**
+     * 是否启用压缩
+     */
+    @Setter
+    private boolean compressEnabled = true;
+
+    /**
+     * 超过该长度(字节)才压缩，压缩后没有变小则保存原始数据
+     */
+    @Setter
+    private int compressThreshold = 1024;
+
+    /**
+     * 预先注册的类，逗号分隔
+     */
+    private String[] registeredClasses = new String[0];
+
+    private final ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+
+    private KryoPool kryoPool;
+
+    private final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+    private final LZ4FastDecompressor decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+
+    public void setRegisteredClasses(String registeredClasses) {
+        this.registeredClasses = StringUtils.isBlank(registeredClasses) ? new String[0] : StringUtils.stripAll(registeredClasses.split(","));
+    }
+
+    @Override
+    public void afterPropertiesSet() throws ClassNotFoundException {
+        Class<?>[] classes = new Class<?>[registeredClasses.length];
+        for (int i = 0; i < registeredClasses.length; i++) {
+            classes[i] = ClassUtils.forName(registeredClasses[i], classLoader);
+        }
+        this.kryoPool = new KryoPool.Builder(() -> {
+            Kryo kryo = new Kryo();
+            kryo.setRegistrationRequired(false);
+            kryo.setClassLoader(classLoader);
+            // 优先使用无参构造，没有时直接创建实例
+            kryo.setInstantiatorStrategy(new Kryo.DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+            // 按字段名读写，类增删字段时兼容
+            kryo.setDefaultSerializer(CompatibleFieldSerializer.class);
+            for (Class<?> type : classes) {
+                kryo.register(type);
+            }
+            return kryo;
+        }).softReferences().build();
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof String) {
+            String str = (String) value;
+            if (str.isEmpty()) {
+                return EMPTY;
+            }
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            if (str.charAt(0) != MAGIC) {
+                return bytes;
+            }
+            return encode(TYPE_STRING, bytes, bytes.length, false);
+        }
+        try {
+            Output output = kryoPool.run(kryo -> {
+                Output out = new Output(256, -1);
+                kryo.writeClassAndObject(out, value);
+                return out;
+            });
+            return encode(TYPE_KRYO, output.getBuffer(), output.position(), shouldCompress(output.position()));
+        } catch (Exception e) {
+            throw new SerializationException("序列化失败：" + value.getClass().getName(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null) {
+            return null;
+        }
+        if (bytes.length < 2 || bytes[0] != MAGIC) {
+            if (bytes.length > 2 && bytes[0] == (byte) 0xAC && bytes[1] == (byte) 0xED) {
+                return deserializeJdk(bytes);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        int header = bytes[1];
+        byte[] data;
+        int offset;
+        int length;
+        if ((header & FLAG_LZ4) != 0) {
+            length = ((bytes[2] & 0xFF) << 24) | ((bytes[3] & 0xFF) << 16) | ((bytes[4] & 0xFF) << 8) | (bytes[5] & 0xFF);
+            data = decompressor.decompress(bytes, 6, length);
+            offset = 0;
+        } else {
+            data = bytes;
+            offset = 2;
+            length = bytes.length - 2;
+        }
+        switch (header & TYPE_MASK) {
+            case TYPE_STRING:
+                return new String(data, offset, length, StandardCharsets.UTF_8);
+            case TYPE_KRYO:
+                try {
+                    return kryoPool.run(kryo -> kryo.readClassAndObject(new Input(data, offset, length)));
+                } catch (Exception e) {
+                    log.warn("Kryo 反序列化失败，按未命中处理", e);
+                    return null;
+                }
+            default:
+                // 不是本序列化器写入的数据，按字符串处理
+                return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private boolean shouldCompress(int length) {
+        return compressEnabled && length > compressThreshold;
+    }
+
+    private byte[] encode(int type, byte[] data, int length, boolean compress) {
+        if (compress) {
+            byte[] compressed = new byte[6 + compressor.maxCompressedLength(length)];
+            int compressedLength = compressor.compress(data, 0, length, compressed, 6, compressed.length - 6);
+            if (compressedLength + 4 < length) {
+                compressed[0] = MAGIC;
+                compressed[1] = (byte) (type | FLAG_LZ4);
+                compressed[2] = (byte) (length >>> 24);
+                compressed[3] = (byte) (length >>> 16);
+                compressed[4] = (byte) (length >>> 8);
+                compressed[5] = (byte) length;
+                byte[] result = new byte[6 + compressedLength];
+                System.arraycopy(compressed, 0, result, 0, result.length);
+                return result;
+            }
+        }
+        byte[] result = new byte[2 + length];
+        result[0] = MAGIC;
+        result[1] = (byte) type;
+        System.arraycopy(data, 0, result, 2, length);
+        return result;
+    }
+
+    /**
+     * 读取切换序列化方式之前由 JdkSerializationRedisSerializer 写入的数据
+     */
+    private Object deserializeJdk(byte[] bytes) {
+        try (ObjectInputStream in = new ConfigurableObjectInputStream(new ByteArrayInputStream(bytes), classLoader)) {
+            return in.readObject();
+        } catch (Exception e) {
+            log.warn("JDK 反序列化失败，按字符串返回", e);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.ssm.example.common.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpHost;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.ConnectingIOReactor;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.X509Certificate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 全局共享的 http/https 连接池
+ * <p>
+ * http 与 https 各使用一个长期存活的连接池，连接复用 keep-alive，
+ * 后台线程定期清理空闲及过期连接，避免每次请求重新握手。
+ * 异步请求使用独立的 NIO 客户端及连接池。
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/12 10:21
+ **/
+@Slf4j
+public final class HttpClientPool {
+
+    /**
+     * 连接池最大连接数
+     */
+    private static final int MAX_TOTAL = 200;
+    /**
+     * 每个路由(host:port)默认最大连接数
+     */
+    private static final int DEFAULT_MAX_PER_ROUTE = 50;
+    /**
+     * 连接空闲多久后，复用前需要重新校验(毫秒)
+     */
+    private static final int VALIDATE_AFTER_INACTIVITY = 2000;
+    /**
+     * 空闲连接最大保留时间(秒)
+     */
+    private static final long MAX_IDLE_TIME = 30;
+    /**
+     * 服务端未返回 Keep-Alive 时，连接默认保持时间(毫秒)
+     */
+    private static final long DEFAULT_KEEP_ALIVE = 30000;
+
+    private static final PoolingHttpClientConnectionManager HTTP_POOL;
+    private static final PoolingHttpClientConnectionManager HTTPS_POOL;
+    private static final CloseableHttpClient HTTP_CLIENT;
+    private static final CloseableHttpClient HTTPS_CLIENT;
+
+    static {
+        HTTP_POOL = createPool(RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory()).build());
+        HTTPS_POOL = createPool(RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", new SSLConnectionSocketFactory(trustAllContext(), NoopHostnameVerifier.INSTANCE)).build());
+        HTTP_CLIENT = createClient(HTTP_POOL);
+        HTTPS_CLIENT = createClient(HTTPS_POOL);
+        Runtime.getRuntime().addShutdownHook(new Thread(HttpClientPool::shutdown, "http-client-pool-shutdown"));
+    }
+
+    private HttpClientPool() {
+    }
+
+    /**
+     * 获取共享的异步(NIO)客户端，http/https 共用一个有界连接池，首次使用时才创建
+     *
+     * @return async client
+     */
+    public static CloseableHttpAsyncClient getAsyncClient() {
+        return AsyncHolder.CLIENT;
+    }
+
+    /**
+     * 根据 url 协议获取对应的共享客户端，调用方不能关闭该客户端
+     *
+     * @param url 请求地址
+     * @return client
+     */
+    public static CloseableHttpClient getClient(String url) {
+        if (url != null && url.startsWith("https://")) {
+            return HTTPS_CLIENT;
+        }
+        return HTTP_CLIENT;
+    }
+
+    /**
+     * 单独调整某个路由的最大连接数，例如对调用量大的下游放宽限制
+     *
+     * @param url         下游地址，如 https://open.example.com
+     * @param maxPerRoute 最大连接数
+     */
+    public static void setMaxPerRoute(String url, int maxPerRoute) {
+        URI uri = URI.create(url);
+        boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() > 0 ? uri.getPort() : (secure ? 443 : 80);
+        HttpHost host = new HttpHost(uri.getHost(), port, uri.getScheme());
+        (secure ? HTTPS_POOL : HTTP_POOL).setMaxPerRoute(new HttpRoute(host, null, secure), maxPerRoute);
+    }
+
+    /**
+     * 连接池使用情况(leased:使用中, available:空闲, pending:等待获取连接, max:上限)
+     *
+     * @return http、https 连接池总体及各路由的统计
+     */
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("http", stats(HTTP_POOL));
+        stats.put("https", stats(HTTPS_POOL));
+        if (AsyncHolder.initialized) {
+            stats.put("async", toMap(AsyncHolder.POOL.getTotalStats()));
+        }
+        return stats;
+    }
+
+    /**
+     * 关闭连接池，应用停止时调用
+     */
+    public static void shutdown() {
+        closeQuietly(HTTP_CLIENT);
+        closeQuietly(HTTPS_CLIENT);
+        if (AsyncHolder.initialized) {
+            closeQuietly(AsyncHolder.CLIENT);
+        }
+    }
+
+    private static Map<String, Object> stats(PoolingHttpClientConnectionManager pool) {
+        Map<String, Object> result = toMap(pool.getTotalStats());
+        Map<String, Object> routes = new LinkedHashMap<>();
+        for (HttpRoute route : pool.getRoutes()) {
+            routes.put(route.getTargetHost().toURI(), toMap(pool.getStats(route)));
+        }
+        result.put("routes", routes);
+        return result;
+    }
+
+    private static Map<String, Object> toMap(PoolStats poolStats) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("leased", poolStats.getLeased());
+        map.put("available", poolStats.getAvailable());
+        map.put("pending", poolStats.getPending());
+        map.put("max", poolStats.getMax());
+        return map;
+    }
+
+    private static PoolingHttpClientConnectionManager createPool(Registry<ConnectionSocketFactory> registry) {
+        PoolingHttpClientConnectionManager pool = new PoolingHttpClientConnectionManager(registry);
+        pool.setMaxTotal(MAX_TOTAL);
+        pool.setDefaultMaxPerRoute(DEFAULT_MAX_PER_ROUTE);
+        pool.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY);
+        return pool;
+    }
+
+    private static CloseableHttpClient createClient(PoolingHttpClientConnectionManager pool) {
+        return HttpClients.custom()
+                .setConnectionManager(pool)
+                .setKeepAliveStrategy(keepAliveStrategy())
+                // 后台线程清理过期及空闲连接
+                .evictExpiredConnections()
+                .evictIdleConnections(MAX_IDLE_TIME, TimeUnit.SECONDS)
+                .build();
+    }
+
+    private static ConnectionKeepAliveStrategy keepAliveStrategy() {
+        return (response, context) -> {
+            long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return keepAlive > 0 ? keepAlive : DEFAULT_KEEP_ALIVE;
+        };
+    }
+
+    private static ConnectingIOReactor createReactor() {
+        try {
+            return new DefaultConnectingIOReactor(IOReactorConfig.custom()
+                    .setIoThreadCount(Runtime.getRuntime().availableProcessors())
+                    .setSoKeepAlive(true)
+                    .build());
+        } catch (IOReactorException e) {
+            throw new IllegalStateException("创建异步http客户端失败", e);
+        }
+    }
+
+    private static SSLContext trustAllContext() {
+        try {
+            SSLContext ctx = SSLContext.getInstance("TLS");
+            X509TrustManager tm = new X509TrustManager() {
+                @Override
+                public X509Certificate[] getAcceptedIssuers() {
+                    return null;
+                }
+
+                @Override
+                public void checkClientTrusted(X509Certificate[] xcs, String str) {
+
+                }
+
+                @Override
+                public void checkServerTrusted(X509Certificate[] xcs, String str) {
+
+                }
+            };
+            ctx.init(null, new TrustManager[]{tm}, null);
+            return ctx;
+        } catch (KeyManagementException | NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static void closeQuietly(Closeable client) {
+        try {
+            client.close();
+        } catch (IOException e) {
+            log.warn("关闭http连接池失败", e);
+        }
+    }
+
+    /**
+     * 异步客户端延迟初始化，未使用异步请求时不启动 IO 线程
+     */
+    private static class AsyncHolder {
+        private static final PoolingNHttpClientConnectionManager POOL;
+        private static final CloseableHttpAsyncClient CLIENT;
+        private static volatile boolean initialized;
+
+        static {
+            POOL = new PoolingNHttpClientConnectionManager(createReactor(), RegistryBuilder.<SchemeIOSessionStrategy>create()
+                    .register("http", NoopIOSessionStrategy.INSTANCE)
+                    .register("https", new SSLIOSessionStrategy(trustAllContext(), NoopHostnameVerifier.INSTANCE)).build());
+            POOL.setMaxTotal(MAX_TOTAL);
+            POOL.setDefaultMaxPerRoute(DEFAULT_MAX_PER_ROUTE);
+            CLIENT = HttpAsyncClients.custom()
+                    .setConnectionManager(POOL)
+                    .setKeepAliveStrategy(keepAliveStrategy())
+                    .build();
+            CLIENT.start();
+            initialized = true;
+        }
+    }
+}
@@ -3,43 +3,37 @@ package com.ssm.example.common.utils;
 import cn.hutool.core.collection.CollectionUtil;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.JSONReader;
+import com.alibaba.fastjson.parser.JSONToken;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.config.AuthSchemes;
-import org.apache.http.client.config.CookieSpecs;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.*;
-import org.apache.http.config.Registry;
-import org.apache.http.config.RegistryBuilder;
-import org.apache.http.conn.socket.ConnectionSocketFactory;
-import org.apache.http.conn.socket.PlainConnectionSocketFactory;
-import org.apache.http.conn.ssl.NoopHostnameVerifier;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
-import java.security.cert.X509Certificate;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -53,7 +47,23 @@ import java.util.stream.Collectors;
 public class HttpUtils {
 
     private static final RequestConfig REQUEST_CONFIG;
-    private static final int THREAD_POOL_MAX_TIMEOUT = 70000;
+    /**
+     * 默认读取超时(毫秒)，可通过 setTimeout 为单次请求单独设置
+     */
+    private static final int DEFAULT_TIMEOUT = 70000;
+    /**
+     * 默认建立连接超时(毫秒)
+     */
+    private static final int CONNECT_TIMEOUT = 5000;
+    /**
+     * 默认从连接池获取连接的超时(毫秒)，连接池耗尽时快速失败
+     */
+    private static final int CONNECTION_REQUEST_TIMEOUT = 3000;
+    private static final ScheduledExecutorService DEADLINE_TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "http-deadline-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
     public static final String GET = "get";
     public static final String PUT = "put";
     public static final String POST = "post";
@@ -74,24 +84,23 @@ public class HttpUtils {
     private static final String DEFAULT_CHARSET = StandardCharsets.UTF_8.name();
     private String method;
 
+    /**
+     * 单次请求超时(毫秒)，小于等于0时使用默认超时
+     */
     @Getter
     @Setter
     private int timeout;
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpUtils.class);
 
     static {
-        // 设置连接池
-        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
-        // 设置连接池大小
-        connectionManager.setMaxTotal(100);
-        connectionManager.setDefaultMaxPerRoute(connectionManager.getMaxTotal());
+        // 连接池由 HttpClientPool 统一管理
         RequestConfig.Builder configBuilder = RequestConfig.custom();
         // 设置连接超时
-        configBuilder.setConnectTimeout(THREAD_POOL_MAX_TIMEOUT);
+        configBuilder.setConnectTimeout(CONNECT_TIMEOUT);
         // 设置读取超时
-        configBuilder.setSocketTimeout(THREAD_POOL_MAX_TIMEOUT);
+        configBuilder.setSocketTimeout(DEFAULT_TIMEOUT);
         // 设置从连接池获取连接实例的超时
-        configBuilder.setConnectionRequestTimeout(THREAD_POOL_MAX_TIMEOUT);
+        configBuilder.setConnectionRequestTimeout(CONNECTION_REQUEST_TIMEOUT);
         REQUEST_CONFIG = configBuilder.build();
     }
 
@@ -139,6 +148,63 @@ public class HttpUtils {
     }
 
     public String doRequest() throws Exception {
+        return execute(buildRequest());
+    }
+
+    /**
+     * 异步请求，不占用调用线程，由 NIO 客户端完成请求
+     * <p>
+     * 注意：future 在 IO 线程上完成，后续耗时处理请使用 thenApplyAsync 等方法切换到业务线程池
+     *
+     * @return 响应内容，超过 timeout 未完成时以 TimeoutException 结束
+     */
+    public CompletableFuture<String> doRequestAsync() {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        HttpRequestBase request;
+        try {
+            request = buildRequest();
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        Future<HttpResponse> future = HttpClientPool.getAsyncClient().execute(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                try {
+                    int code = response.getStatusLine().getStatusCode();
+                    String body = EntityUtils.toString(response.getEntity(), getCharset());
+                    if (code != 200) {
+                        result.completeExceptionally(new IllegalAccessException(body));
+                    } else {
+                        result.complete(body);
+                    }
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                result.completeExceptionally(e);
+            }
+
+            @Override
+            public void cancelled() {
+                result.cancel(false);
+            }
+        });
+        // 整体截止时间：到期仍未完成则取消请求，连接随之释放
+        int deadline = this.getEffectiveTimeout();
+        ScheduledFuture<?> timer = DEADLINE_TIMER.schedule(() -> {
+            if (result.completeExceptionally(new TimeoutException("请求超时(" + deadline + "ms)：" + url))) {
+                future.cancel(true);
+            }
+        }, deadline, TimeUnit.MILLISECONDS);
+        result.whenComplete((body, e) -> timer.cancel(false));
+        return result;
+    }
+
+    private HttpRequestBase buildRequest() throws UnsupportedEncodingException {
         // 通用的请求头
         this.addHeader("User-Agent", "Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/37.0.2062.120 Safari/537.36");
         this.addHeader("Connection", "Keep-Alive");
@@ -146,53 +212,119 @@ public class HttpUtils {
 
         HttpRequestBase request;
         HttpEntityEnclosingRequestBase requestBase;
-        String res;
         if (POST.equals(this.getMethod())) {
             requestBase = new HttpPost(url);
             buildBody(requestBase);
-            res = execute(requestBase);
+            request = requestBase;
         } else if (PUT.equals(this.getMethod())) {
             requestBase = new HttpPut(url);
             buildBody(requestBase);
-            res = execute(requestBase);
+            request = requestBase;
         } else if (DELETE.equals(this.getMethod())) {
             request = new HttpDelete(buildUrl(url));
-            res = execute(request);
         } else if (HEAD.equals(this.getMethod())) {
             request = new HttpHead(buildUrl(url));
-            res = execute(request);
         } else if (OPTIONS.equals(this.getMethod())) {
             request = new HttpOptions(buildUrl(url));
-            res = execute(request);
         } else if (TRACE.equals(this.getMethod())) {
             request = new HttpTrace(buildUrl(url));
-            res = execute(request);
         } else {
             request = new HttpGet(buildUrl(url));
-            res = execute(request);
         }
-        return res;
-    }
-
-    private String execute(HttpRequestBase request) throws IllegalAccessException, IOException {
-        request.setConfig(REQUEST_CONFIG);
+        request.setConfig(this.buildRequestConfig());
         for (Map.Entry<String, String> e : headers.entrySet()) {
             request.addHeader(e.getKey(), e.getValue());
         }
-        HttpClient httpClient = wrapClient();
-        HttpResponse response = httpClient.execute(request);
-        int code = response.getStatusLine().getStatusCode();
-        if (code != 200) {
-            String err;
-            try {
-                err = EntityUtils.toString(response.getEntity(), this.getCharset());
-            } catch (Exception var9) {
-                err = "无法读取响应消息";
+        return request;
+    }
+
+    /**
+     * 本次请求的超时时间，未设置时使用默认值
+     */
+    private int getEffectiveTimeout() {
+        return this.timeout > 0 ? this.timeout : DEFAULT_TIMEOUT;
+    }
+
+    private RequestConfig buildRequestConfig() {
+        if (this.timeout <= 0) {
+            return REQUEST_CONFIG;
+        }
+        // 单次请求的超时，慢的下游不会拖住默认配置下的其他请求
+        return RequestConfig.copy(REQUEST_CONFIG)
+                .setConnectTimeout(Math.min(this.timeout, CONNECT_TIMEOUT))
+                .setConnectionRequestTimeout(Math.min(this.timeout, CONNECTION_REQUEST_TIMEOUT))
+                .setSocketTimeout(this.timeout)
+                .build();
+    }
+
+    /**
+     * 流式处理响应，响应体不会整体读入内存
+     *
+     * @param handler 响应流处理，流由本方法负责关闭
+     * @return 处理结果
+     */
+    public <T> T doRequest(StreamHandler<T> handler) throws Exception {
+        return execute(buildRequest(), entity -> {
+            if (entity == null) {
+                return handler.handle(new ByteArrayInputStream(new byte[0]), Charset.forName(this.getCharset()));
             }
-            throw new IllegalAccessException(err);
+            Charset charset = ContentType.getOrDefault(entity).getCharset();
+            try (InputStream in = entity.getContent()) {
+                return handler.handle(in, charset != null ? charset : Charset.forName(this.getCharset()));
+            }
+        });
+    }
+
+    /**
+     * 流式解析 json 响应：顶层为数组时逐个元素解析并回调，内存占用与响应大小无关；
+     * 顶层为对象时解析为一个元素回调
+     *
+     * @param tClass   元素类型
+     * @param consumer 元素处理
+     * @return 处理的元素个数
+     */
+    public <T> long doRequestForEach(Class<T> tClass, Consumer<? super T> consumer) throws Exception {
+        return doRequest((in, charset) -> {
+            long count = 0;
+            try (JSONReader reader = new JSONReader(new InputStreamReader(in, charset))) {
+                if (reader.peek() == JSONToken.LBRACKET) {
+                    reader.startArray();
+                    while (reader.hasNext()) {
+                        consumer.accept(reader.readObject(tClass));
+                        count++;
+                    }
+                    reader.endArray();
+                } else {
+                    consumer.accept(reader.readObject(tClass));
+                    count++;
+                }
+            }
+            return count;
+        });
+    }
+
+    private String execute(HttpRequestBase request) throws IllegalAccessException, IOException {
+        return execute(request, entity -> EntityUtils.toString(entity, this.getCharset()));
+    }
+
+    private <T> T execute(HttpRequestBase request, EntityReader<T> reader) throws IllegalAccessException, IOException {
+        // 使用共享连接池，响应必须被完整读取并关闭，连接才能归还连接池复用
+        try (CloseableHttpResponse response = HttpClientPool.getClient(this.getUrl()).execute(request)) {
+            int code = response.getStatusLine().getStatusCode();
+            if (code != 200) {
+                String err;
+                try {
+                    err = EntityUtils.toString(response.getEntity(), this.getCharset());
+                } catch (Exception var9) {
+                    err = "无法读取响应消息";
+                } finally {
+                    EntityUtils.consumeQuietly(response.getEntity());
+                }
+                throw new IllegalAccessException(err);
+            }
+            // 直接返回响应结果，给外部处理
+            return reader.read(response.getEntity());
         }
-        // 直接返回响应结果，给外部处理
-        return EntityUtils.toString(response.getEntity(), this.getCharset());
     }
 
     private void buildBody(HttpEntityEnclosingRequestBase requestBase) throws UnsupportedEncodingException {
@@ -262,49 +394,25 @@ public class HttpUtils {
         return sbUrl.toString();
     }
 
-    private HttpClient wrapClient() {
-        if (this.getUrl().startsWith("https://")) {
-            return sslClient();
-        }
-        return HttpClients.createDefault();
+    /**
+     * 响应流处理
+     */
+    @FunctionalInterface
+    public interface StreamHandler<T> {
+        /**
+         * 处理响应流
+         *
+         * @param in      响应流
+         * @param charset 响应编码
+         * @return 处理结果
+         * @throws IOException 读取失败
+         */
+        T handle(InputStream in, Charset charset) throws IOException;
     }
 
-    private static HttpClient sslClient() {
-        try {
-            SSLContext ctx = SSLContext.getInstance("TLS");
-            X509TrustManager tm = new X509TrustManager() {
-                @Override
-                public X509Certificate[] getAcceptedIssuers() {
-                    return null;
-                }
-
-                @Override
-                public void checkClientTrusted(X509Certificate[] xcs, String str) {
-
-                }
-
-                @Override
-                public void checkServerTrusted(X509Certificate[] xcs, String str) {
-
-                }
-            };
-            ctx.init(null, new TrustManager[]{tm}, null);
-
-            SSLConnectionSocketFactory socketFactory = new SSLConnectionSocketFactory(ctx, NoopHostnameVerifier.INSTANCE);
-            // 创建Registry
-            RequestConfig requestConfig = RequestConfig.custom().setCookieSpec(CookieSpecs.STANDARD_STRICT)
-                    .setExpectContinueEnabled(Boolean.TRUE).setTargetPreferredAuthSchemes(Arrays.asList(AuthSchemes.NTLM, AuthSchemes.DIGEST))
-                    .setProxyPreferredAuthSchemes(Collections.singletonList(AuthSchemes.BASIC)).build();
-            Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
-                    .register("http", PlainConnectionSocketFactory.INSTANCE)
-                    .register("https", socketFactory).build();
-            // 创建ConnectionManager，添加Connection配置信息
-            PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
-            return HttpClients.custom().setConnectionManager(connectionManager)
-                    .setDefaultRequestConfig(requestConfig).build();
-        } catch (KeyManagementException | NoSuchAlgorithmException ex) {
-            throw new RuntimeException(ex);
-        }
+    @FunctionalInterface
+    private interface EntityReader<T> {
+        T read(HttpEntity entity) throws IOException;
     }
 
     private static class Parameter {
@@ -325,6 +433,9 @@ public class HttpUtils {
         }
     }
 
+    /**
+     * 解析响应结果，大数组响应请使用 doRequestForEach 流式处理
+     */
     public <T> T parseResultJson(String json, Class<T> tClass, List<T> tList) {
         // 这里通常会是一个对象，一般都会对返回格式进行统一处理{"msg":xxx,"data":xxx,"code":xxx}
         if (json.startsWith("{") && json.endsWith("}")) {
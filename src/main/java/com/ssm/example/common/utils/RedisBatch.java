@@ -0,0 +1,151 @@
+package com.ssm.example.common.utils;
+
+import com.ssm.example.common.cache.NearCache;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * redis 批量操作，所有命令通过 pipeline 一次发送
+ * <p>
+ * 用法：redisCache.batch().set("a", 1, 60).hmset("b", map, 60).get("a").execute()
+ * 返回结果按命令顺序排列，状态类回复(如 set、hmset)不会出现在结果中；同一批次内的命令不保证原子性。
+ * set、incr、delete、expire 修改过的 key 在执行后从本地缓存中删除
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/13 10:12
+ **/
+public class RedisBatch {
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final NearCache nearCache;
+    private final List<Consumer<RedisOperations<String, Object>>> commands = new ArrayList<>();
+    /**
+     * 需要在执行后从本地缓存删除的 key
+     */
+    private final Set<String> modifiedKeys = new LinkedHashSet<>();
+
+    /**
+     * @param nearCache 本地缓存，未启用时为 null
+     */
+    RedisBatch(RedisTemplate<String, Object> redisTemplate, NearCache nearCache) {
+        this.redisTemplate = redisTemplate;
+        this.nearCache = nearCache;
+    }
+
+    public RedisBatch get(String key) {
+        commands.add(ops -> ops.opsForValue().get(key));
+        return this;
+    }
+
+    public RedisBatch set(String key, Object value) {
+        commands.add(ops -> ops.opsForValue().set(key, value));
+        modifiedKeys.add(key);
+        return this;
+    }
+
+    /**
+     * @param time 时间(秒) 小于等于0 将设置无限期
+     */
+    public RedisBatch set(String key, Object value, long time) {
+        if (time > 0) {
+            commands.add(ops -> ops.opsForValue().set(key, value, time, TimeUnit.SECONDS));
+            modifiedKeys.add(key);
+        } else {
+            set(key, value);
+        }
+        return this;
+    }
+
+    public RedisBatch incr(String key, long delta) {
+        commands.add(ops -> ops.opsForValue().increment(key, delta));
+        modifiedKeys.add(key);
+        return this;
+    }
+
+    public RedisBatch delete(String key) {
+        commands.add(ops -> ops.delete(key));
+        modifiedKeys.add(key);
+        return this;
+    }
+
+    /**
+     * @param time 时间(秒)
+     */
+    public RedisBatch expire(String key, long time) {
+        if (time > 0) {
+            commands.add(ops -> ops.expire(key, time, TimeUnit.SECONDS));
+            modifiedKeys.add(key);
+        }
+        return this;
+    }
+
+    public RedisBatch hgetAll(String key) {
+        commands.add(ops -> ops.opsForHash().entries(key));
+        return this;
+    }
+
+    public RedisBatch hset(String key, String item, Object value, long time) {
+        commands.add(ops -> ops.opsForHash().put(key, item, value));
+        return expire(key, time);
+    }
+
+    public RedisBatch hmset(String key, Map<String, Object> map, long time) {
+        commands.add(ops -> ops.opsForHash().putAll(key, map));
+        return expire(key, time);
+    }
+
+    public RedisBatch sAdd(String key, long time, Object... values) {
+        commands.add(ops -> ops.opsForSet().add(key, values));
+        return expire(key, time);
+    }
+
+    public RedisBatch rPush(String key, Object value, long time) {
+        commands.add(ops -> ops.opsForList().rightPush(key, value));
+        return expire(key, time);
+    }
+
+    public RedisBatch zAdd(String key, Object value, double score) {
+        commands.add(ops -> ops.opsForZSet().add(key, value, score));
+        return this;
+    }
+
+    public int size() {
+        return commands.size();
+    }
+
+    /**
+     * 执行批量命令
+     *
+     * @return 各命令的返回结果(不含状态类回复)
+     */
+    public List<Object> execute() {
+        if (commands.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (Consumer<RedisOperations<String, Object>> command : commands) {
+                    command.accept(ops);
+                }
+                return null;
+            }
+        });
+        if (nearCache != null && !modifiedKeys.isEmpty()) {
+            nearCache.evict(modifiedKeys.toArray(new String[0]));
+        }
+        return results;
+    }
+}
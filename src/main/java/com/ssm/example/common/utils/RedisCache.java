@@ -1,17 +1,24 @@
 package com.ssm.example.common.utils;
 
+import com.ssm.example.common.cache.NearCache;
+import com.ssm.example.common.queue.DelayJobHandler;
+import com.ssm.example.common.queue.RedisDelayQueue;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
-import org.springframework.data.redis.support.atomic.RedisAtomicLong;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * redis 缓存工具类
@@ -24,6 +31,33 @@ import java.util.concurrent.TimeUnit;
 @Component
 public class RedisCache {
 
+    /**
+     * 分页缓存索引(记录某个业务key下所有分页key的集合)的后缀
+     */
+    private static final String PAGE_INDEX_SUFFIX = "_pages";
+
+    /**
+     * 等锁的最大退避间隔(毫秒)
+     */
+    private static final long LOCK_MAX_BACKOFF_MILLIS = 200;
+
+    /**
+     * 提前刷新使用的锁后缀、租期，以及没有旧值时等待其他节点加载的时间(毫秒)
+     */
+    private static final String REFRESH_LOCK_SUFFIX = ":refresh-lock";
+    private static final long REFRESH_LOCK_LEASE_MILLIS = 30000;
+    private static final long REFRESH_WAIT_MILLIS = 3000;
+
+    /**
+     * XFetch 参数，大于1更倾向于提前刷新
+     */
+    private static final double XFETCH_BETA = 1.0;
+
+    /**
+     * deleteIndexed 每次删除的 key 个数
+     */
+    private static final int DELETE_BATCH_SIZE = 1000;
+
     // 注： 这里不能用Autowired按类型装配注入,必须用@Resource
     // StringRedisTemplate默认采用的是String的序列化策略,
     // RedisTemplate默认采用的是JDK的序列化策略，保存的key和value都是采用此策略序列化保存的
@@ -33,6 +67,15 @@ public class RedisCache {
     @Resource
     private RedisTemplate<String, Object> redisTemplate;
 
+    /**
+     * 本地一级缓存，未启用时所有读写直接访问 redis
+     */
+    @Autowired(required = false)
+    private NearCache nearCache;
+
+    @Resource
+    private RedisDelayQueue redisDelayQueue;
+
     /**
      * 生成业务查询使用的缓存key , 带分页
      *
@@ -44,6 +87,20 @@ public class RedisCache {
         return generateCacheKey(username, obj) + "_page[" + pageNo + "," + pageSize + "]";
     }
 
+    /**
+     * 生成键集分页查询使用的缓存key
+     *
+     * @param username  用户名
+     * @param obj       业务相关命名
+     * @param pageToken 续页标识，第一页为空
+     * @param pageSize  每页条数
+     * @return key
+     */
+    public String generateCacheSeekKey(String username, String obj, String pageToken, Integer pageSize) {
+        String key = generateCacheKey(username, obj);
+        return key == null ? null : key + "_seek[" + StringUtils.defaultString(pageToken) + "," + pageSize + "]";
+    }
+
     /**
      * 生成业务查询使用的缓存key
      *
@@ -67,9 +124,144 @@ public class RedisCache {
     private void expire(String key, long time) {
         if (time > 0) {
             redisTemplate.expire(key, time, TimeUnit.SECONDS);
+            // 本地缓存按旧的过期时间保存，删除后下次读取时重新加载
+            if (nearCache != null) {
+                nearCache.evict(key);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] rawKey(String key) {
+        return ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(key);
+    }
+
+    /**
+     * 按 RedisTemplate 的值序列化方式序列化，用于 lua 脚本参数
+     */
+    @SuppressWarnings("unchecked")
+    private byte[] rawValue(Object value) {
+        return ((RedisSerializer<Object>) redisTemplate.getValueSerializer()).serialize(value);
+    }
+
+    /**
+     * 按 RedisTemplate 的值序列化方式反序列化，用于复制本地缓存中的对象
+     */
+    @SuppressWarnings("unchecked")
+    private Object deserializeValue(byte[] value) {
+        return ((RedisSerializer<Object>) redisTemplate.getValueSerializer()).deserialize(value);
+    }
+
+    /**
+     * 按 RedisTemplate 的 hash 值序列化方式序列化，用于 lua 脚本参数
+     */
+    @SuppressWarnings("unchecked")
+    private byte[] rawHashValue(Object value) {
+        return ((RedisSerializer<Object>) redisTemplate.getHashValueSerializer()).serialize(value);
+    }
+
+    /**
+     * 执行单个 key 的 lua 脚本，参数见 {@link RedisScripts}
+     */
+    private <T> T eval(RedisScript<T> script, String key, Object... args) {
+        return redisTemplate.execute(script, RedisScripts.ARGS_SERIALIZER, null, Collections.singletonList(key), args);
+    }
+
+    /**
+     * 保存分页缓存，并把 pageKey 记录到 username_obj 的分页索引中，以便 {@link #deletePages} 整体删除
+     *
+     * @param username 用户名
+     * @param obj      业务相关命名
+     * @param pageKey  generateCachePageKey 或 generateCacheSeekKey 生成的key
+     * @param value    值
+     * @param time     时间(秒)
+     */
+    public void setPage(String username, String obj, String pageKey, Object value, long time) {
+        setObject(pageKey, value, time);
+        sSetAndTime(generateCacheKey(username, obj) + PAGE_INDEX_SUFFIX, time, pageKey);
+    }
+
+    /**
+     * 删除 username_obj 及其所有分页缓存
+     *
+     * @param username 用户名
+     * @param obj      业务相关命名
+     */
+    public void deletePages(String username, String obj) {
+        String key = generateCacheKey(username, obj);
+        if (key == null) {
+            return;
+        }
+        String indexKey = key + PAGE_INDEX_SUFFIX;
+        Set<Object> pages = sGet(indexKey);
+        String[] keys = new String[pages.size() + 2];
+        keys[0] = key;
+        keys[1] = indexKey;
+        int i = 2;
+        for (Object page : pages) {
+            keys[i++] = String.valueOf(page);
+        }
+        delete(keys);
+    }
+
+    /**
+     * 放入缓存并把 key 记入索引集合，以便 {@link #deleteIndexed} 整体删除，写入与记录索引在一个 lua 脚本中完成
+     *
+     * @param indexKey 索引集合的键
+     * @param key      键
+     * @param value    值
+     * @param time     时间(秒) time要大于0 如果time小于等于0 将设置无限期
+     */
+    public void setIndexed(String indexKey, String key, Object value, long time) {
+        byte[] rawValue = rawValue(value);
+        redisTemplate.execute(RedisScripts.SET_INDEXED, RedisScripts.ARGS_SERIALIZER, null,
+                Arrays.asList(key, indexKey), time, rawValue);
+        if (nearCache != null && nearCache.accepts(key)) {
+            // 其他节点的旧副本已在整体删除时失效，只需放入本地；放入反序列化出的副本，调用方之后修改 value 不影响缓存
+            nearCache.put(key, deserializeValue(rawValue), time);
         }
     }
 
+    /**
+     * 删除索引集合记录的所有缓存，本地缓存按前缀删除并通知其他节点
+     * <p>
+     * 先读取索引，再每次最多 {@value #DELETE_BATCH_SIZE} 个 key 通过 lua 脚本删除并移出索引，
+     * 读取索引之后新写入的缓存仍留在索引中。redis 集群下索引与缓存 key 需要通过 {hash tag} 分配到同一个槽
+     *
+     * @param indexKey  索引集合的键
+     * @param keyPrefix 索引中 key 的公共前缀
+     * @return 删除的 key 个数(不含已过期的)
+     */
+    public long deleteIndexed(String indexKey, String keyPrefix) {
+        byte[] rawIndexKey = rawKey(indexKey);
+        Set<byte[]> members = redisTemplate.execute(
+                (RedisCallback<Set<byte[]>>) connection -> connection.sMembers(rawIndexKey));
+        long count = 0;
+        if (members != null && !members.isEmpty()) {
+            List<String> keys = new ArrayList<>(Math.min(members.size(), DELETE_BATCH_SIZE) + 1);
+            keys.add(indexKey);
+            for (byte[] member : members) {
+                keys.add(new String(member, StandardCharsets.UTF_8));
+                if (keys.size() > DELETE_BATCH_SIZE) {
+                    count += deleteIndexedBatch(keys);
+                    keys.subList(1, keys.size()).clear();
+                }
+            }
+            if (keys.size() > 1) {
+                count += deleteIndexedBatch(keys);
+            }
+        }
+        if (nearCache != null) {
+            nearCache.evictPrefix(keyPrefix);
+        }
+        return count;
+    }
+
+    private long deleteIndexedBatch(List<String> keys) {
+        Long count = redisTemplate.execute(RedisScripts.DELETE_INDEXED, RedisScripts.ARGS_SERIALIZER, null, keys);
+        return count == null ? 0 : count;
+    }
+
     /**
      * 根据key 获取过期时间
      *
@@ -101,6 +293,9 @@ public class RedisCache {
      */
     public void delete(String... key) {
         redisTemplate.delete(Arrays.asList(key));
+        if (nearCache != null) {
+            nearCache.evict(key);
+        }
     }
 
     // ============================ String =============================
@@ -112,7 +307,7 @@ public class RedisCache {
      * @return String value
      */
     public String getString(String key) {
-        Object obj = redisTemplate.opsForValue().get(key);
+        Object obj = getObject(key);
         return obj.toString();
     }
 
@@ -123,7 +318,7 @@ public class RedisCache {
      * @param value 值
      */
     public void setString(String key, Object value) {
-        redisTemplate.opsForValue().set(key, value);
+        setObject(key, value);
     }
 
     /**
@@ -134,11 +329,7 @@ public class RedisCache {
      * @param expireTime 时间(秒) time要大于0 如果time小于等于0 将设置无限期
      */
     public void setString(String key, Object value, long expireTime) {
-        if (expireTime > 0) {
-            redisTemplate.opsForValue().set(key, value, expireTime, TimeUnit.SECONDS);
-        } else {
-            setString(key, value);
-        }
+        setObject(key, value, expireTime);
     }
 
     // ============================ Object =============================
@@ -150,7 +341,40 @@ public class RedisCache {
      * @return obj
      */
     public Object getObject(String key) {
-        return redisTemplate.opsForValue().get(key);
+        if (nearCache == null || !nearCache.accepts(key)) {
+            return redisTemplate.opsForValue().get(key);
+        }
+        Object value = nearCache.get(key);
+        if (value == null) {
+            long version = nearCache.version(key);
+            // GET 与 PTTL 在一次往返中完成，本地副本不会比 redis 中的值存活更久
+            byte[] rawKey = rawKey(key);
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.get(rawKey);
+                connection.pTtl(rawKey);
+                return null;
+            });
+            value = results.get(0);
+            nearCache.fill(key, value, (Long) results.get(1), version);
+        }
+        return value;
+    }
+
+    /**
+     * 获取对象，调用方可以修改返回的对象
+     * <p>
+     * {@link #getObject} 命中本地缓存时返回的是各线程共享的同一个对象，这里返回按值序列化方式复制的副本；
+     * 不经过本地缓存的 key 每次从 redis 反序列化，本身就是新对象
+     *
+     * @param key key
+     * @return obj
+     */
+    public Object getObjectCopy(String key) {
+        if (nearCache == null || !nearCache.accepts(key)) {
+            return redisTemplate.opsForValue().get(key);
+        }
+        Object value = getObject(key);
+        return value == null ? null : deserializeValue(rawValue(value));
     }
 
     /**
@@ -163,7 +387,13 @@ public class RedisCache {
     public void setObject(String key, Object value, long time) {
         //JsonUtils.toJson
         if (time > 0) {
-            redisTemplate.opsForValue().set(key, value, time, TimeUnit.SECONDS);
+            byte[] rawKey = rawKey(key);
+            byte[] rawValue = rawValue(value);
+            redisTemplate.execute((RedisCallback<Object>) connection -> {
+                connection.setEx(rawKey, time, rawValue);
+                return null;
+            });
+            refreshNearCache(key, rawValue, time);
         } else {
             setObject(key, value);
         }
@@ -176,11 +406,28 @@ public class RedisCache {
      * @param value 值
      */
     public void setObject(String key, Object value) {
-        redisTemplate.opsForValue().set(key, value);
+        byte[] rawKey = rawKey(key);
+        byte[] rawValue = rawValue(value);
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.set(rawKey, rawValue);
+            return null;
+        });
+        refreshNearCache(key, rawValue, 0);
+    }
+
+    /**
+     * 放入从写入 redis 的字节反序列化出的副本，调用方之后修改 value 不影响本地缓存
+     */
+    private void refreshNearCache(String key, byte[] rawValue, long time) {
+        if (nearCache != null && nearCache.accepts(key)) {
+            nearCache.refresh(key, deserializeValue(rawValue), time);
+        }
     }
 
     /**
      * 递增
+     * <p>
+     * 计数器不经过本地缓存：递增/递减不发送失效通知，读取使用 {@link #getIncrement}
      *
      * @param key   键
      * @param delta 要增加几(大于0)
@@ -193,80 +440,96 @@ public class RedisCache {
         return redisTemplate.opsForValue().increment(key, delta);
     }
 
-    public Integer getNumber(String key, Integer expire) {
-        ValueOperations<String, Object> opsfv = redisTemplate.opsForValue();
-        if (!hasKey(key)) {
-            RedisAtomicLong redisAtomicLong = new RedisAtomicLong(key, Objects.requireNonNull(redisTemplate.getConnectionFactory()));
-            // 设置初值
-            redisAtomicLong.set(0);
-            // 多久之后过期.设置24s后过期
-            redisAtomicLong.expire(expire, TimeUnit.HOURS);
-            // 设置到什么时间过期.例：当前时间的24h后过期
-            // redisAtomicLong.expireAt(new Date(System.currentTimeMillis() + 60 * 1000))
+    /**
+     * 递增，key 新建时设置过期时间，一次原子操作
+     *
+     * @param key   键
+     * @param delta 要增加几(大于0)
+     * @param time  key 新建时的过期时间(秒)，小于等于0不设置
+     * @return 递增后的值
+     */
+    public Long incr(String key, long delta, long time) {
+        if (delta < 0) {
+            throw new RuntimeException("递增因子必须大于0");
         }
-        // 第二个参数为递增因子
-        return Objects.requireNonNull(opsfv.increment(key,1L)).intValue();
+        return eval(RedisScripts.INCR_EXPIRE, key, time, delta);
     }
 
+    /**
+     * 递增并重置过期时间，一次原子操作；用于只要还在递增就不能过期的计数器
+     *
+     * @param key   键
+     * @param delta 要增加几(大于0)
+     * @param time  过期时间(秒)，小于等于0不设置
+     * @return 递增后的值
+     */
+    public long incrAndExpire(String key, long delta, long time) {
+        if (delta < 0) {
+            throw new RuntimeException("递增因子必须大于0");
+        }
+        Long value = eval(RedisScripts.INCR_REFRESH, key, time, delta);
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * 获取自增序号，例如每日流水号
+     *
+     * @param key    键
+     * @param expire key 新建时的过期时间(小时)
+     * @return 递增后的值
+     */
+    public Integer getNumber(String key, Integer expire) {
+        return incr(key, 1L, TimeUnit.HOURS.toSeconds(expire)).intValue();
+    }
+
+    /**
+     * 获取计数器当前值
+     *
+     * @param key 键
+     * @return 当前值
+     */
     public Integer getIncrement(String key) {
-        return Integer.valueOf(Objects.requireNonNull(redisTemplate.boundValueOps(key).get(0, -1)));
+        byte[] rawKey = rawKey(key);
+        byte[] raw = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(rawKey));
+        return Integer.valueOf(new String(Objects.requireNonNull(raw), StandardCharsets.UTF_8));
     }
 
+    /**
+     * 添加延时任务
+     *
+     * @param queueName 队列名
+     * @param value     任务内容
+     * @param expire    延迟时间(分钟)
+     */
     public void zAdd(String queueName, String value, int expire) {
-        Calendar calendar = Calendar.getInstance();
-        // default 30min
-        calendar.add(Calendar.MINUTE, expire);
-        redisTemplate.opsForZSet().add(queueName, value, calendar.getTimeInMillis());
+        redisDelayQueue.add(queueName, value, TimeUnit.MINUTES.toMillis(expire));
     }
 
+    /**
+     * 消费延时队列，到期任务由 {@link RedisDelayQueue} 的工作线程处理
+     *
+     * @param queueName 队列名
+     * @param handler   任务处理
+     */
+    public void consume(String queueName, DelayJobHandler handler) {
+        redisDelayQueue.subscribe(queueName, handler);
+    }
+
+    /**
+     * @deprecated 使用 {@link #consume(String, DelayJobHandler)} 指定任务处理
+     */
+    @Deprecated
     public void consume(String queueName) {
-        while (true) {
-            Set<Object> set = redisTemplate.opsForZSet().rangeByScore(queueName, 0, System.currentTimeMillis(), 0, 1);
-            if (set == null || set.isEmpty()) {
-                try {
-                    //log.info("没有任务");
-                    TimeUnit.MICROSECONDS.sleep(500);
-                } catch (InterruptedException e) {
-                    log.error("InterruptedException", e);
-                }
-                continue;
-            }
-            String orderId = (String) set.iterator().next();
-            if (redisTemplate.opsForZSet().remove(queueName, orderId) > 0) {
-                log.info("order id:{} handle success", orderId);
-                // 看是不是取完了
-                long length = redisTemplate.opsForZSet().size(queueName);
-                log.info("[consume]{} length:{}", queueName, length);
-            }
-        }
+        consume(queueName, (queue, orderId) -> log.info("order id:{} handle success", orderId));
     }
 
+    /**
+     * @deprecated 使用 {@link #consume(String, DelayJobHandler)} 指定任务处理
+     */
+    @Deprecated
     public void consume2(String queueName) {
-        Executors.newSingleThreadExecutor().submit((Runnable) () -> {
-            while (true) {
-                try {
-                    Set<Object> taskIdSet = redisTemplate.opsForZSet().rangeByScore(queueName, 0, System.currentTimeMillis(), 0, 1);
-                    if (taskIdSet == null || taskIdSet.isEmpty()) {
-                        log.info("没有任务");
-                    } else {
-                        taskIdSet.forEach(value -> {
-                            long result = redisTemplate.opsForZSet().remove(queueName, value);
-                            // todo: 执行检查逻辑，判断是否需要升级
-                            if (result > 0) {
-                                log.info("从延时队列中获取到任务，服务单ID:" + value + " , 当前时间：" + LocalDateTime.now());
-                            }
-                        });
-                    }
-                } catch (Exception e) {
-                    // redis 操作的地方需要进行try catch处理，防止发生异常导致线程中断
-                }
-                try {
-                    TimeUnit.SECONDS.sleep(3);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
-        });
+        // todo: 执行检查逻辑，判断是否需要升级
+        consume(queueName, (queue, value) -> log.info("从延时队列中获取到任务，服务单ID:" + value + " , 当前时间：" + LocalDateTime.now()));
     }
 
     /**
@@ -283,6 +546,307 @@ public class RedisCache {
         return redisTemplate.opsForValue().increment(key, -delta);
     }
 
+    // ============================ 分布式锁 =============================
+
+    /**
+     * 尝试加锁，不等待
+     * <p>
+     * 锁有租期，持有者崩溃后到期自动释放；执行时间可能超过租期时用 {@link #renewLock} 续期
+     *
+     * @param key         锁名
+     * @param leaseMillis 租期(毫秒)
+     * @return 持有者标识，解锁/续期时使用；加锁失败返回 null
+     */
+    public String tryLock(String key, long leaseMillis) {
+        String token = UUID.randomUUID().toString();
+        Long locked = eval(RedisScripts.LOCK_ACQUIRE, key, token, leaseMillis);
+        return locked != null && locked == 1 ? token : null;
+    }
+
+    /**
+     * 尝试加锁，最多等待 waitMillis 毫秒
+     *
+     * @param key         锁名
+     * @param leaseMillis 租期(毫秒)
+     * @param waitMillis  最长等待时间(毫秒)
+     * @return 持有者标识；超时或线程被中断返回 null
+     */
+    public String tryLock(String key, long leaseMillis, long waitMillis) {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        long backoff = 10;
+        while (true) {
+            String token = tryLock(key, leaseMillis);
+            long remaining = deadline - System.currentTimeMillis();
+            if (token != null || remaining <= 0) {
+                return token;
+            }
+            try {
+                // 随机退避，避免等待者同时重试
+                Thread.sleep(Math.min(remaining, backoff + ThreadLocalRandom.current().nextLong(backoff)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            backoff = Math.min(backoff * 2, LOCK_MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    /**
+     * 解锁，只有持有者可以解锁，锁已过期被他人持有时不会误删
+     *
+     * @param key   锁名
+     * @param token 加锁时返回的持有者标识
+     * @return 是否解锁成功
+     */
+    public boolean unlock(String key, String token) {
+        Long released = eval(RedisScripts.LOCK_RELEASE, key, token);
+        return released != null && released == 1;
+    }
+
+    /**
+     * 续期，只有持有者可以续期
+     *
+     * @param key         锁名
+     * @param token       加锁时返回的持有者标识
+     * @param leaseMillis 新的租期(毫秒)
+     * @return 是否续期成功，失败说明锁已过期
+     */
+    public boolean renewLock(String key, String token, long leaseMillis) {
+        Long renewed = eval(RedisScripts.LOCK_RENEW, key, token, leaseMillis);
+        return renewed != null && renewed == 1;
+    }
+
+    /**
+     * 加入共享租约：同一组(例如同一次任务触发)的多个参与者可以同时持有，其他组需等待所有参与者退出；
+     * 与 {@link #tryLock} 使用同一个 key 时互斥
+     *
+     * @param key         锁名
+     * @param group       组
+     * @param leaseMillis 租期(毫秒)，任一参与者续期都会延长整个租约
+     * @return 参与者标识，续期/退出时使用；租约已属于其他组时返回 null
+     */
+    public String tryLockShared(String key, String group, long leaseMillis) {
+        String token = UUID.randomUUID().toString();
+        Long locked = eval(RedisScripts.SHARED_LEASE_ACQUIRE, key, group, token, leaseMillis);
+        return locked != null && locked == 1 ? token : null;
+    }
+
+    /**
+     * 续期共享租约
+     *
+     * @param key         锁名
+     * @param token       加入时返回的参与者标识
+     * @param leaseMillis 新的租期(毫秒)
+     * @return 是否续期成功，失败说明租约已过期
+     */
+    public boolean renewShared(String key, String token, long leaseMillis) {
+        Long renewed = eval(RedisScripts.SHARED_LEASE_RENEW, key, token, leaseMillis);
+        return renewed != null && renewed == 1;
+    }
+
+    /**
+     * 退出共享租约，最后一个参与者退出时释放
+     *
+     * @param key   锁名
+     * @param token 加入时返回的参与者标识
+     * @return 是否退出成功
+     */
+    public boolean unlockShared(String key, String token) {
+        Long released = eval(RedisScripts.SHARED_LEASE_RELEASE, key, token);
+        return released != null && released == 1;
+    }
+
+    /**
+     * 单调递增的数字，value 大于当前值时写入，多个节点用同一个值竞争时只有一个成功；
+     * 不经过 RedisTemplate 的序列化器，只能通过本方法读写
+     *
+     * @param key   键
+     * @param value 新值，传0时只读取不修改
+     * @return 原值，不存在时为0；原值小于 value 说明写入成功
+     */
+    public long advance(String key, long value) {
+        Long current = eval(RedisScripts.ADVANCE, key, value);
+        return current == null ? 0 : current;
+    }
+
+    // ============================ 提前刷新 =============================
+
+    /**
+     * 获取缓存，未命中或即将过期时由 loader 重新加载，防止热点 key 过期瞬间大量请求同时重建(缓存击穿)
+     * <p>
+     * 采用概率提前过期(XFetch)：越接近过期时间、加载耗时越长，越可能在过期前由某个请求提前刷新；
+     * 刷新时加锁，同一时刻只有一个节点执行 loader，其他请求继续返回旧值。
+     * 没有旧值时等待持有锁的节点加载完成，等待超时后自行加载。
+     * 该 key 保存的是带过期信息的包装对象，只能通过本方法读取。
+     *
+     * @param key    键
+     * @param time   时间(秒)，需大于0
+     * @param loader 加载数据，返回 null 时不缓存
+     * @param <T>    值类型
+     * @return 值
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getOrRefresh(String key, long time, Supplier<T> loader) {
+        RefreshAheadEntry entry = (RefreshAheadEntry) getObject(key);
+        if (entry != null && !entry.shouldRefresh()) {
+            return (T) entry.value;
+        }
+        String lockKey = key + REFRESH_LOCK_SUFFIX;
+        String token = entry == null
+                ? tryLock(lockKey, REFRESH_LOCK_LEASE_MILLIS, REFRESH_WAIT_MILLIS)
+                : tryLock(lockKey, REFRESH_LOCK_LEASE_MILLIS);
+        if (token == null && entry != null) {
+            // 其他节点正在刷新，返回旧值
+            return (T) entry.value;
+        }
+        try {
+            if (token != null && entry == null) {
+                // 等锁期间其他节点可能已经加载完成
+                entry = (RefreshAheadEntry) getObject(key);
+                if (entry != null && !entry.shouldRefresh()) {
+                    return (T) entry.value;
+                }
+            }
+            long start = System.currentTimeMillis();
+            T value = loader.get();
+            if (value != null) {
+                long now = System.currentTimeMillis();
+                setObject(key, new RefreshAheadEntry(value, now - start, now + TimeUnit.SECONDS.toMillis(time)), time);
+            }
+            return value;
+        } finally {
+            if (token != null) {
+                unlock(lockKey, token);
+            }
+        }
+    }
+
+    /**
+     * {@link #getOrRefresh} 保存的值及其加载耗时、过期时间
+     */
+    private static class RefreshAheadEntry {
+        private Object value;
+        private long delta;
+        private long expireAt;
+
+        RefreshAheadEntry(Object value, long delta, long expireAt) {
+            this.value = value;
+            this.delta = delta;
+            this.expireAt = expireAt;
+        }
+
+        /**
+         * XFetch：now - delta * beta * ln(rand) >= expireAt 时刷新，rand 取 (0,1]
+         */
+        boolean shouldRefresh() {
+            double rand = 1.0 - ThreadLocalRandom.current().nextDouble();
+            return System.currentTimeMillis() - Math.max(delta, 1) * XFETCH_BETA * Math.log(rand) >= expireAt;
+        }
+    }
+
+    // ============================ 批量操作 =============================
+
+    /**
+     * 批量获取，一次 MGET
+     *
+     * @param keys 键
+     * @return 与 keys 顺序一致的值，不存在的为 null
+     */
+    public List<Object> mget(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return redisTemplate.opsForValue().multiGet(keys);
+    }
+
+    /**
+     * 批量放入，一次 MSET
+     *
+     * @param map 键值
+     */
+    public void mset(Map<String, Object> map) {
+        if (!map.isEmpty()) {
+            redisTemplate.opsForValue().multiSet(map);
+            if (nearCache != null) {
+                nearCache.evict(map.keySet().toArray(new String[0]));
+            }
+        }
+    }
+
+    /**
+     * 批量放入并设置时间，所有 SETEX 通过 pipeline 一次发送
+     *
+     * @param map  键值
+     * @param time 时间(秒) time要大于0 如果time小于等于0 将设置无限期
+     */
+    public void mset(Map<String, Object> map, long time) {
+        if (time <= 0) {
+            mset(map);
+            return;
+        }
+        RedisBatch batch = batch();
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            batch.set(entry.getKey(), entry.getValue(), time);
+        }
+        batch.execute();
+        if (nearCache != null) {
+            nearCache.evict(map.keySet().toArray(new String[0]));
+        }
+    }
+
+    /**
+     * 批量获取多个 hash 表中同一项的值，一次 pipeline
+     *
+     * @param keys 键
+     * @param item 项
+     * @return key -> 值，不存在的为 null
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> hget(Collection<String> keys, String item) {
+        List<String> keyList = new ArrayList<>(keys);
+        byte[] rawItem = ((RedisSerializer<String>) redisTemplate.getHashKeySerializer()).serialize(item);
+        List<Object> values = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keyList) {
+                connection.hGet(rawKey(key), rawItem);
+            }
+            return null;
+        }, redisTemplate.getHashValueSerializer());
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (int i = 0; i < keyList.size(); i++) {
+            result.put(keyList.get(i), values.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * 批量获取多个 hash 表的所有键值，一次 pipeline
+     *
+     * @param keys 键
+     * @return key -> hash 表内容
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Map<Object, Object>> hmget(Collection<String> keys) {
+        RedisBatch batch = batch();
+        keys.forEach(batch::hgetAll);
+        List<Object> values = batch.execute();
+        Map<String, Map<Object, Object>> result = new LinkedHashMap<>();
+        int i = 0;
+        for (String key : keys) {
+            Object value = values.get(i++);
+            result.put(key, value == null ? new LinkedHashMap<>() : (Map<Object, Object>) value);
+        }
+        return result;
+    }
+
+    /**
+     * 创建批量操作，命令通过 pipeline 一次发送
+     *
+     * @return batch
+     */
+    public RedisBatch batch() {
+        return new RedisBatch(redisTemplate, nearCache);
+    }
+
     // ================================ Map =================================
 
     /**
@@ -324,10 +888,19 @@ public class RedisCache {
      * @param time 时间(秒)
      */
     public void hmset(String key, Map<String, Object> map, long time) {
-        redisTemplate.opsForHash().putAll(key, map);
-        if (time > 0) {
-            expire(key, time);
+        if (time <= 0 || map.isEmpty()) {
+            hmset(key, map);
+            return;
+        }
+        // 写入与过期时间一次完成
+        Object[] args = new Object[map.size() * 2 + 1];
+        int i = 0;
+        args[i++] = time;
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            args[i++] = entry.getKey();
+            args[i++] = rawHashValue(entry.getValue());
         }
+        eval(RedisScripts.HSET_EXPIRE, key, args);
     }
 
     /**
@@ -350,9 +923,10 @@ public class RedisCache {
      * @param time  时间(秒) 注意:如果已存在的hash表有时间,这里将会替换原有的时间
      */
     public void hset(String key, String item, Object value, long time) {
-        redisTemplate.opsForHash().put(key, item, value);
         if (time > 0) {
-            expire(key, time);
+            eval(RedisScripts.HSET_EXPIRE, key, time, item, rawHashValue(value));
+        } else {
+            hset(key, item, value);
         }
     }
 
@@ -445,11 +1019,15 @@ public class RedisCache {
      */
     public Long sSetAndTime(String key, long time, Object... values) {
         try {
-            Long count = redisTemplate.opsForSet().add(key, values);
-            if (time > 0) {
-                expire(key, time);
+            if (time <= 0) {
+                return redisTemplate.opsForSet().add(key, values);
             }
-            return count;
+            Object[] args = new Object[values.length + 1];
+            args[0] = time;
+            for (int i = 0; i < values.length; i++) {
+                args[i + 1] = rawValue(values[i]);
+            }
+            return eval(RedisScripts.SADD_EXPIRE, key, args);
         } catch (Throwable e) {
             return 0L;
         }
@@ -520,9 +1098,10 @@ public class RedisCache {
      * @param time  时间(秒)
      */
     public void lSet(String key, Object value, long time) {
-        redisTemplate.opsForList().rightPush(key, value);
         if (time > 0) {
-            expire(key, time);
+            eval(RedisScripts.RPUSH_EXPIRE, key, time, rawValue(value));
+        } else {
+            lSet(key, value);
         }
     }
 
@@ -544,10 +1123,16 @@ public class RedisCache {
      * @param time  时间(秒)
      */
     public void lSet(String key, List<Object> value, long time) {
-        redisTemplate.opsForList().rightPushAll(key, value);
-        if (time > 0) {
-            expire(key, time);
+        if (time <= 0 || value.isEmpty()) {
+            lSet(key, value);
+            return;
         }
+        Object[] args = new Object[value.size() + 1];
+        args[0] = time;
+        for (int i = 0; i < value.size(); i++) {
+            args[i + 1] = rawValue(value.get(i));
+        }
+        eval(RedisScripts.RPUSH_EXPIRE, key, args);
     }
 
     /**
@@ -584,27 +1169,60 @@ public class RedisCache {
     }
 
     /**
-     * Set 添加元素
+     * Set 添加元素，集合元素个数达到 len 后丢弃新元素
+     * <p>
+     * 计数、添加、设置过期时间在服务端一次原子完成，并发写入也不会超过 len
      *
      * @param key     集合名
-     * @param timeout 过期时间（默认：7，单位：天）
+     * @param timeout 过期时间（默认：7，单位：天），仅在集合新建时设置
+     * @param len     集合最大长度
      * @param obj     存入的值
      */
     public void saveSet(String key, Integer timeout, Integer len, Object... obj) {
-        //TimeUnit.SECONDS
-        // todo: 超过len个元素则自动丢弃，不进行添加操作
-        if (hasKey(key)) {
-            // 默认Set集合长度为10 超过长度则丢弃元素
-            if (getSetMembers(key).size() < len) {
-                redisTemplate.opsForSet().add(key, obj);
-            } else {
-                log.warn("Redis Set 添加元素失败，超过设定长度：{},则丢弃该元素：{}", len, obj);
-            }
-        } else {
-            // 首次创建的时候设置过期时间
-            redisTemplate.opsForSet().add(key, obj);
-            redisTemplate.expire(key, timeout, TimeUnit.DAYS);
+        Long dropped = eval(RedisScripts.CAPPED_SADD, key, buildArgs(TimeUnit.DAYS.toSeconds(timeout), len, obj));
+        if (dropped != null && dropped > 0) {
+            log.warn("Redis Set 添加元素失败，超过设定长度：{},则丢弃该元素：{}", len, obj);
+        }
+    }
+
+    /**
+     * List 头部添加元素，只保留最新的 len 个
+     *
+     * @param key    键
+     * @param len    最大长度
+     * @param time   时间(秒)，每次写入都会刷新，小于等于0不设置
+     * @param values 值
+     * @return list 长度
+     */
+    public Long lPushCapped(String key, long len, long time, Object... values) {
+        return eval(RedisScripts.CAPPED_LPUSH, key, buildArgs(time, len, values));
+    }
+
+    /**
+     * ZSet 添加元素，只保留 score 最大的 len 个，例如以时间戳为 score 保存最近的记录
+     *
+     * @param key   键
+     * @param value 值
+     * @param score 分数
+     * @param len   最大长度
+     * @param time  时间(秒)，每次写入都会刷新，小于等于0不设置
+     * @return zset 长度
+     */
+    public Long zAddCapped(String key, Object value, double score, long len, long time) {
+        return eval(RedisScripts.CAPPED_ZADD, key, time, len, score, rawValue(value));
+    }
+
+    /**
+     * 构造 {过期时间, 长度, 值...} 形式的脚本参数
+     */
+    private Object[] buildArgs(long time, long len, Object... values) {
+        Object[] args = new Object[values.length + 2];
+        args[0] = time;
+        args[1] = len;
+        for (int i = 0; i < values.length; i++) {
+            args[i + 2] = rawValue(values[i]);
         }
+        return args;
     }
 
     /**
@@ -0,0 +1,74 @@
+package com.ssm.example.common.utils;
+
+import lombok.Setter;
+
+import javax.annotation.Resource;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 号段式 ID 生成器
+ * <p>
+ * 每个节点一次从 redis 预占 step 个号(INCRBY key step)，之后在本地分配，号段用完才再访问 redis。
+ * 生成的 ID 全局唯一、单节点内递增，但多个节点之间不保证严格递增；节点重启时未用完的号段会被跳过。
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/18 14:20
+ **/
+public class RedisIdGenerator {
+
+    @Resource
+    private RedisCache redisCache;
+
+    /**
+     * 每次预占的号段长度
+     */
+    @Setter
+    private long step = 1000;
+
+    private final Map<String, Segment> segments = new ConcurrentHashMap<>();
+
+    /**
+     * 获取下一个 ID
+     *
+     * @param key 序列名
+     * @return id
+     */
+    public long nextId(String key) {
+        return nextId(key, 0);
+    }
+
+    /**
+     * 获取下一个 ID，序列 key 新建时设置过期时间，适用于按天重置的流水号(key 中带日期)
+     *
+     * @param key  序列名
+     * @param time key 新建时的过期时间(秒)
+     * @return id
+     */
+    public long nextId(String key, long time) {
+        return segments.computeIfAbsent(key, k -> new Segment()).next(key, time);
+    }
+
+    /**
+     * 移除本地号段，例如按天的序列在第二天不再使用时
+     *
+     * @param key 序列名
+     */
+    public void release(String key) {
+        segments.remove(key);
+    }
+
+    private class Segment {
+        private long current;
+        private long max;
+
+        synchronized long next(String key, long time) {
+            if (current >= max) {
+                max = redisCache.incr(key, step, time);
+                current = max - step;
+            }
+            return ++current;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.ssm.example.common.utils;
+
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * RedisCache 使用的 lua 脚本，写入与设置过期时间在服务端一次完成
+ * <p>
+ * 约定：ARGV[1] 为过期时间(秒)，小于等于0时不设置过期时间；其余参数为已序列化的值
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/13 9:40
+ **/
+final class RedisScripts {
+
+    /**
+     * 脚本参数序列化：byte[] 原样传递(已由 RedisTemplate 的序列化器序列化的值)，其他参数按字符串传递
+     */
+    static final RedisSerializer<Object> ARGS_SERIALIZER = new RedisSerializer<Object>() {
+        @Override
+        public byte[] serialize(Object o) {
+            if (o instanceof byte[]) {
+                return (byte[]) o;
+            }
+            return o == null ? null : String.valueOf(o).getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public Object deserialize(byte[] bytes) {
+            return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    /**
+     * HSET 多个项并设置过期时间，ARGV[2..] 为 item,value 交替
+     */
+    static final RedisScript<Long> HSET_EXPIRE = script(
+            "for i = 2, #ARGV, 2 do redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end " +
+                    "if tonumber(ARGV[1]) > 0 then redis.call('EXPIRE', KEYS[1], ARGV[1]) end " +
+                    "return (#ARGV - 1) / 2");
+
+    /**
+     * RPUSH 多个值并设置过期时间，返回 list 长度
+     */
+    static final RedisScript<Long> RPUSH_EXPIRE = script(
+            "local n = redis.call('LLEN', KEYS[1]) " +
+                    "for i = 2, #ARGV do n = redis.call('RPUSH', KEYS[1], ARGV[i]) end " +
+                    "if tonumber(ARGV[1]) > 0 then redis.call('EXPIRE', KEYS[1], ARGV[1]) end " +
+                    "return n");
+
+    /**
+     * SADD 多个值并设置过期时间，返回新增个数
+     */
+    static final RedisScript<Long> SADD_EXPIRE = script(
+            "local n = 0 " +
+                    "for i = 2, #ARGV do n = n + redis.call('SADD', KEYS[1], ARGV[i]) end " +
+                    "if tonumber(ARGV[1]) > 0 then redis.call('EXPIRE', KEYS[1], ARGV[1]) end " +
+                    "return n");
+
+    /**
+     * INCRBY，key 没有过期时间(新建)时设置过期时间，ARGV[2] 为递增因子，返回递增后的值
+     */
+    static final RedisScript<Long> INCR_EXPIRE = script(
+            "local value = redis.call('INCRBY', KEYS[1], ARGV[2]) " +
+                    "if tonumber(ARGV[1]) > 0 and redis.call('TTL', KEYS[1]) == -1 then redis.call('EXPIRE', KEYS[1], ARGV[1]) end " +
+                    "return value");
+
+    /**
+     * INCRBY 并重置过期时间，ARGV[2] 为递增因子，返回递增后的值
+     */
+    static final RedisScript<Long> INCR_REFRESH = script(
+            "local value = redis.call('INCRBY', KEYS[1], ARGV[2]) " +
+                    "if tonumber(ARGV[1]) > 0 then redis.call('EXPIRE', KEYS[1], ARGV[1]) end " +
+                    "return value");
+
+    /**
+     * 限制长度的 SADD：集合达到 ARGV[2] 个元素后丢弃新元素，key 新建时设置过期时间，返回被丢弃的个数
+     */
+    static final RedisScript<Long> CAPPED_SADD = script(
+            "local created = redis.call('EXISTS', KEYS[1]) == 0 " +
+                    "local len = tonumber(ARGV[2]) " +
+                    "local size = redis.call('SCARD', KEYS[1]) " +
+                    "local dropped = 0 " +
+                    "for i = 3, #ARGV do " +
+                    "  if size < len then size = size + redis.call('SADD', KEYS[1], ARGV[i]) " +
+                    "  elseif redis.call('SISMEMBER', KEYS[1], ARGV[i]) == 0 then dropped = dropped + 1 end " +
+                    "end " +
+                    "if created and size > 0 and tonumber(ARGV[1]) > 0 then redis.call('EXPIRE', KEYS[1], ARGV[1]) end " +
+                    "return dropped");
+
+    /**
+     * 限制长度的 LPUSH：新元素放在表头，只保留最新的 ARGV[2] 个，返回 list 长度
+     */
+    static final RedisScript<Long> CAPPED_LPUSH = script(
+            "for i = 3, #ARGV do redis.call('LPUSH', KEYS[1], ARGV[i]) end " +
+                    "redis.call('LTRIM', KEYS[1], 0, tonumber(ARGV[2]) - 1) " +
+                    "if tonumber(ARGV[1]) > 0 then redis.call('EXPIRE', KEYS[1], ARGV[1]) end " +
+                    "return redis.call('LLEN', KEYS[1])");
+
+    /**
+     * 限制长度的 ZADD：ARGV[3] 为 score，ARGV[4] 为值，只保留 score 最大的 ARGV[2] 个，返回 zset 长度
+     */
+    static final RedisScript<Long> CAPPED_ZADD = script(
+            "redis.call('ZADD', KEYS[1], ARGV[3], ARGV[4]) " +
+                    "redis.call('ZREMRANGEBYRANK', KEYS[1], 0, -tonumber(ARGV[2]) - 1) " +
+                    "if tonumber(ARGV[1]) > 0 then redis.call('EXPIRE', KEYS[1], ARGV[1]) end " +
+                    "return redis.call('ZCARD', KEYS[1])");
+
+    /**
+     * 写入 KEYS[1] 并记入索引集合 KEYS[2]，ARGV[2] 为值；索引的过期时间延长到不短于 KEYS[1]，KEYS[1] 永久时索引也永久
+     */
+    static final RedisScript<Long> SET_INDEXED = script(
+            "local ttl = tonumber(ARGV[1]) " +
+                    "local indexTtl = redis.call('TTL', KEYS[2]) " +
+                    "redis.call('SADD', KEYS[2], KEYS[1]) " +
+                    "if ttl > 0 then " +
+                    "  redis.call('SET', KEYS[1], ARGV[2], 'EX', ttl) " +
+                    "  if indexTtl ~= -1 and indexTtl < ttl then redis.call('EXPIRE', KEYS[2], ttl) end " +
+                    "else " +
+                    "  redis.call('SET', KEYS[1], ARGV[2]) " +
+                    "  redis.call('PERSIST', KEYS[2]) " +
+                    "end " +
+                    "return 1");
+
+    /**
+     * 删除 KEYS[2..] 并从索引集合 KEYS[1] 中移除，索引为空时 redis 自动删除，返回实际删除的 key 个数
+     * <p>
+     * 要删除的 key 由调用方读取索引后通过 KEYS 传入，脚本访问的 key 都在 KEYS 中声明
+     */
+    static final RedisScript<Long> DELETE_INDEXED = script(
+            "redis.call('SREM', KEYS[1], unpack(KEYS, 2)) " +
+                    "return redis.call('DEL', unpack(KEYS, 2))");
+
+    /**
+     * 加锁：key 不存在时写入 ARGV[1](持有者标识) 并设置 ARGV[2] 毫秒过期，成功返回1
+     */
+    static final RedisScript<Long> LOCK_ACQUIRE = script(
+            "if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then return 1 end " +
+                    "return 0");
+
+    /**
+     * 解锁：只有持有者(值等于 ARGV[1])才能删除，成功返回1
+     */
+    static final RedisScript<Long> LOCK_RELEASE = script(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end " +
+                    "return 0");
+
+    /**
+     * 续期：只有持有者才能把过期时间重置为 ARGV[2] 毫秒，成功返回1
+     */
+    static final RedisScript<Long> LOCK_RENEW = script(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end " +
+                    "return 0");
+
+    /**
+     * 加入共享租约：KEYS[1] 为 hash，字段 @owner 为租约所属的组 ARGV[1]，其余字段为参与者 ARGV[2]；
+     * 租约空闲或已属于同一组时加入并设置 ARGV[3] 毫秒过期，成功返回1。已被独占锁持有(string)时返回0
+     */
+    static final RedisScript<Long> SHARED_LEASE_ACQUIRE = script(
+            "local type = redis.call('TYPE', KEYS[1]).ok " +
+                    "if type ~= 'none' and type ~= 'hash' then return 0 end " +
+                    "local owner = redis.call('HGET', KEYS[1], '@owner') " +
+                    "if owner and owner ~= ARGV[1] then return 0 end " +
+                    "redis.call('HSET', KEYS[1], '@owner', ARGV[1]) " +
+                    "redis.call('HSET', KEYS[1], ARGV[2], 1) " +
+                    "redis.call('PEXPIRE', KEYS[1], ARGV[3]) " +
+                    "return 1");
+
+    /**
+     * 续期共享租约：参与者 ARGV[1] 仍在租约中时把过期时间重置为 ARGV[2] 毫秒，成功返回1
+     */
+    static final RedisScript<Long> SHARED_LEASE_RENEW = script(
+            "if redis.call('TYPE', KEYS[1]).ok == 'hash' and redis.call('HEXISTS', KEYS[1], ARGV[1]) == 1 then " +
+                    "  return redis.call('PEXPIRE', KEYS[1], ARGV[2]) " +
+                    "end " +
+                    "return 0");
+
+    /**
+     * 退出共享租约：移除参与者 ARGV[1]，最后一个参与者退出时删除租约，成功返回1
+     */
+    static final RedisScript<Long> SHARED_LEASE_RELEASE = script(
+            "if redis.call('TYPE', KEYS[1]).ok ~= 'hash' or redis.call('HDEL', KEYS[1], ARGV[1]) == 0 then return 0 end " +
+                    "if redis.call('HLEN', KEYS[1]) <= 1 then redis.call('DEL', KEYS[1]) end " +
+                    "return 1");
+
+    /**
+     * ARGV[1] 大于 key 中保存的数字(不存在时为0)时写入，返回原值；调用方比较原值判断是否写入成功
+     */
+    static final RedisScript<Long> ADVANCE = script(
+            "local current = tonumber(redis.call('GET', KEYS[1]) or '0') " +
+                    "if tonumber(ARGV[1]) > current then redis.call('SET', KEYS[1], ARGV[1]) end " +
+                    "return current");
+
+    private RedisScripts() {
+    }
+
+    private static RedisScript<Long> script(String lua) {
+        return new DefaultRedisScript<>(lua, Long.class);
+    }
+}
@@ -0,0 +1,53 @@
+package com.ssm.example.common.web;
+
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * 管理接口的写操作校验：GET/HEAD 之外的请求需要在请求头 {@value #HEADER} 中带上配置的 token，否则返回 403
+ * <p>
+ * token 为空时不允许任何写操作，只能查看。比较 token 时耗时与内容无关，防止逐字节猜测。
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/27 10:00
+ **/
+@Slf4j
+public class AdminTokenInterceptor extends HandlerInterceptorAdapter {
+
+    public static final String HEADER = "X-Admin-Token";
+
+    /**
+     * 写操作需要的 token，为空时禁止写操作
+     */
+    @Setter
+    private String token;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws IOException {
+        String method = request.getMethod();
+        if ("GET".equals(method) || "HEAD".equals(method)) {
+            return true;
+        }
+        if (StringUtils.isNotEmpty(token) && matches(request.getHeader(HEADER))) {
+            return true;
+        }
+        log.warn("拒绝管理接口写操作：{} {}，来源 {}", new Object[]{method, request.getRequestURI(), request.getRemoteAddr()});
+        response.sendError(HttpServletResponse.SC_FORBIDDEN);
+        return false;
+    }
+
+    private boolean matches(String value) {
+        return value != null && MessageDigest.isEqual(value.getBytes(StandardCharsets.UTF_8),
+                token.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,364 @@
+package com.ssm.example.common.web;
+
+import lombok.Setter;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 响应压缩：客户端支持 gzip/deflate，响应类型在 mimeTypes 中且长度达到 minSize 时压缩
+ * <p>
+ * 响应先写入 minSize 大小的缓冲区，超过后才决定是否压缩，小响应原样输出并保留 Content-Length。
+ * 已设置 Content-Encoding 的响应不再压缩。压缩时去掉 Content-Length，并加上 Vary: Accept-Encoding。
+ * 放在 ShallowEtagHeaderFilter 之后，ETag 按压缩后的内容计算，不同编码的 ETag 不同。
+ * 异步请求的响应在异步分派中写出，filter-mapping 需要包含 ASYNC 分派。
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/25 14:00
+ **/
+public class CompressionFilter extends OncePerRequestFilter {
+
+    private static final String GZIP = "gzip";
+    private static final String DEFLATE = "deflate";
+    private static final String CONTENT_LENGTH = "Content-Length";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * 达到该字节数才压缩
+     */
+    @Setter
+    private int minSize = 1024;
+
+    private Set<String> mimeTypes = new HashSet<>(Arrays.asList("text/html", "text/plain", "text/css",
+            "application/javascript", "application/json"));
+
+    /**
+     * 压缩的响应类型，逗号分隔
+     */
+    public void setMimeTypes(String mimeTypes) {
+        Set<String> types = new HashSet<>();
+        for (String type : StringUtils.split(mimeTypes, ',')) {
+            if (StringUtils.isNotBlank(type)) {
+                types.add(type.trim().toLowerCase(Locale.ENGLISH));
+            }
+        }
+        this.mimeTypes = types;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        // 异步分派时容器传入的是开始异步处理时包装过的响应，沿用其中的压缩状态
+        CompressingResponse compressingResponse = WebUtils.getNativeResponse(response, CompressingResponse.class);
+        HttpServletResponse responseToUse = response;
+        if (compressingResponse == null) {
+            String encoding = acceptedEncoding(request.getHeader("Accept-Encoding"));
+            if (encoding == null || "HEAD".equals(request.getMethod())) {
+                chain.doFilter(request, response);
+                return;
+            }
+            compressingResponse = new CompressingResponse(response, encoding);
+            responseToUse = compressingResponse;
+        }
+        boolean asyncStarted = false;
+        try {
+            chain.doFilter(request, responseToUse);
+            asyncStarted = isAsyncStarted(request);
+            // 异步请求在异步分派中写出
+            if (!asyncStarted) {
+                compressingResponse.finish();
+            }
+        } finally {
+            if (!asyncStarted) {
+                compressingResponse.release();
+            }
+        }
+    }
+
+    /**
+     * 客户端支持的压缩方式，优先 gzip，都不支持(或 q=0)时返回 null
+     */
+    static String acceptedEncoding(String acceptEncoding) {
+        if (StringUtils.isBlank(acceptEncoding)) {
+            return null;
+        }
+        boolean deflate = false;
+        for (String part : StringUtils.split(acceptEncoding, ',')) {
+            String[] params = StringUtils.split(part, ';');
+            if (params.length == 0 || isRejected(params)) {
+                continue;
+            }
+            String coding = params[0].trim().toLowerCase(Locale.ENGLISH);
+            if (GZIP.equals(coding) || "*".equals(coding)) {
+                return GZIP;
+            }
+            deflate |= DEFLATE.equals(coding);
+        }
+        return deflate ? DEFLATE : null;
+    }
+
+    private static boolean isRejected(String[] params) {
+        for (int i = 1; i < params.length; i++) {
+            String param = params[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2)) <= 0;
+                } catch (NumberFormatException e) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        int semicolon = contentType.indexOf(';');
+        String type = semicolon < 0 ? contentType : contentType.substring(0, semicolon);
+        return mimeTypes.contains(type.trim().toLowerCase(Locale.ENGLISH));
+    }
+
+    private class CompressingResponse extends HttpServletResponseWrapper {
+        private final String encoding;
+        private final byte[] buffer = new byte[Math.max(minSize, 1)];
+        private int count;
+        /**
+         * 缓冲区满或写完后确定：压缩时为压缩流，否则为原始输出流
+         */
+        private OutputStream target;
+        private DeflaterOutputStream compressor;
+        private Deflater deflater;
+        private int contentLength = -1;
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+
+        CompressingResponse(HttpServletResponse response, String encoding) {
+            super(response);
+            this.encoding = encoding;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() has already been called");
+            }
+            if (outputStream == null) {
+                outputStream = new CompressingOutputStream();
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (outputStream != null && writer == null) {
+                throw new IllegalStateException("getOutputStream() has already been called");
+            }
+            if (writer == null) {
+                outputStream = new CompressingOutputStream();
+                writer = new PrintWriter(new OutputStreamWriter(outputStream, getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            if (target == null) {
+                contentLength = len;
+            } else if (compressor == null) {
+                super.setContentLength(len);
+            }
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                setContentLength(Integer.parseInt(value));
+            } else {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                setContentLength(Integer.parseInt(value));
+            } else {
+                super.addHeader(name, value);
+            }
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            if (CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                setContentLength(value);
+            } else {
+                super.setIntHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addIntHeader(String name, int value) {
+            if (CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                setContentLength(value);
+            } else {
+                super.addIntHeader(name, value);
+            }
+        }
+
+        /**
+         * 还在缓冲时不提交响应，避免少量数据就确定为不压缩
+         */
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (target != null) {
+                target.flush();
+                super.flushBuffer();
+            }
+        }
+
+        @Override
+        public void resetBuffer() {
+            if (target == null) {
+                count = 0;
+            }
+            super.resetBuffer();
+        }
+
+        @Override
+        public void reset() {
+            if (target == null) {
+                count = 0;
+                contentLength = -1;
+            }
+            super.reset();
+        }
+
+        void finish() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (target == null) {
+                if (count == 0) {
+                    if (contentLength >= 0) {
+                        super.setContentLength(contentLength);
+                    }
+                    return;
+                }
+                start(false);
+            }
+            if (compressor != null) {
+                compressor.finish();
+            }
+        }
+
+        /**
+         * 释放压缩器的本地内存
+         */
+        void release() {
+            if (deflater != null) {
+                deflater.end();
+                deflater = null;
+            }
+        }
+
+        private void write(byte[] bytes, int offset, int length) throws IOException {
+            if (target == null) {
+                if (count + length <= buffer.length) {
+                    System.arraycopy(bytes, offset, buffer, count, length);
+                    count += length;
+                    return;
+                }
+                start(true);
+            }
+            target.write(bytes, offset, length);
+        }
+
+        /**
+         * 确定是否压缩，并写出缓冲区
+         *
+         * @param full 缓冲区已满，即响应长度达到 minSize
+         */
+        private void start(boolean full) throws IOException {
+            OutputStream out = super.getOutputStream();
+            if (full && isCompressible(getContentType()) && !containsHeader(CONTENT_ENCODING)) {
+                super.setHeader(CONTENT_ENCODING, encoding);
+                super.addHeader("Vary", "Accept-Encoding");
+                if (GZIP.equals(encoding)) {
+                    GzipOutputStream gzip = new GzipOutputStream(out);
+                    deflater = gzip.deflater();
+                    compressor = gzip;
+                } else {
+                    deflater = new Deflater();
+                    compressor = new DeflaterOutputStream(out, deflater, BUFFER_SIZE, true);
+                }
+                target = compressor;
+            } else {
+                if (contentLength >= 0) {
+                    super.setContentLength(contentLength);
+                }
+                target = out;
+            }
+            target.write(buffer, 0, count);
+            count = 0;
+        }
+
+        private class CompressingOutputStream extends ServletOutputStream {
+            @Override
+            public void write(int b) throws IOException {
+                CompressingResponse.this.write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                CompressingResponse.this.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (target != null) {
+                    target.flush();
+                }
+            }
+        }
+    }
+
+    private static final class GzipOutputStream extends GZIPOutputStream {
+        GzipOutputStream(OutputStream out) throws IOException {
+            super(out, BUFFER_SIZE, true);
+        }
+
+        Deflater deflater() {
+            return def;
+        }
+    }
+}
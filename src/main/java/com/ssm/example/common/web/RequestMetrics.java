@@ -0,0 +1,144 @@
+package com.ssm.example.common.web;
+
+import com.ssm.example.common.metrics.LatencyHistogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 请求统计：按处理方法记录耗时直方图、执行中的请求数，以及按 请求方法+状态码 的请求数
+ * <p>
+ * {@link RequestMetricsInterceptor} 确定处理方法，{@link RequestMetricsFilter} 计时并记录。
+ * 没有匹配到处理方法的请求(如404，包括交给容器默认 servlet 的请求)记为 unmapped，静态资源记为 static。
+ * 记录只有原子加，处理方法个数有限，不会随请求 url 增长。
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/25 10:00
+ **/
+public class RequestMetrics {
+
+    /**
+     * 请求属性：当前请求的处理方法统计，由拦截器设置
+     */
+    static final String ENDPOINT_ATTRIBUTE = RequestMetrics.class.getName() + ".endpoint";
+
+    static final String UNMAPPED = "unmapped";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    private final LongAdder inFlight = new LongAdder();
+
+    Endpoint endpoint(String handler) {
+        Endpoint endpoint = endpoints.get(handler);
+        if (endpoint == null) {
+            endpoint = endpoints.computeIfAbsent(handler, key -> new Endpoint());
+        }
+        return endpoint;
+    }
+
+    void started() {
+        inFlight.increment();
+    }
+
+    void completed(Endpoint endpoint, String method, int status, long nanos) {
+        inFlight.decrement();
+        endpoint.latency.recordNanos(nanos);
+        String key = method + " " + status;
+        LongAdder counter = endpoint.requests.get(key);
+        if (counter == null) {
+            counter = endpoint.requests.computeIfAbsent(key, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * 统计：inFlight 执行中的请求数；endpoints 各处理方法的 inFlight、latency 耗时、requests 按 请求方法+状态码 的请求数
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("inFlight", inFlight.sum());
+        Map<String, Object> handlers = new TreeMap<>();
+        endpoints.forEach((handler, endpoint) -> {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("inFlight", endpoint.inFlight.sum());
+            map.put("latency", endpoint.latency.snapshot());
+            Map<String, Long> requests = new TreeMap<>();
+            endpoint.requests.forEach((key, count) -> requests.put(key, count.sum()));
+            map.put("requests", requests);
+            handlers.put(handler, map);
+        });
+        result.put("endpoints", handlers);
+        return result;
+    }
+
+    /**
+     * Prometheus 文本格式(0.0.4)：耗时为 summary，单位秒
+     */
+    public String prometheus() {
+        Map<String, Endpoint> sorted = new TreeMap<>(endpoints);
+        StringBuilder builder = new StringBuilder(256 + sorted.size() * 512);
+        builder.append("# HELP http_server_requests_in_flight Requests currently being processed.\n")
+                .append("# TYPE http_server_requests_in_flight gauge\n")
+                .append("http_server_requests_in_flight ").append(inFlight.sum()).append('\n');
+
+        builder.append("# HELP http_server_handler_requests_in_flight Requests currently being processed by handler.\n")
+                .append("# TYPE http_server_handler_requests_in_flight gauge\n");
+        sorted.forEach((handler, endpoint) -> builder.append("http_server_handler_requests_in_flight{handler=\"")
+                .append(escape(handler)).append("\"} ").append(endpoint.inFlight.sum()).append('\n'));
+
+        builder.append("# HELP http_server_requests_total Completed requests by handler, method and status.\n")
+                .append("# TYPE http_server_requests_total counter\n");
+        sorted.forEach((handler, endpoint) -> new TreeMap<>(endpoint.requests).forEach((key, count) -> {
+            int space = key.indexOf(' ');
+            builder.append("http_server_requests_total{handler=\"").append(escape(handler))
+                    .append("\",method=\"").append(escape(key.substring(0, space)))
+                    .append("\",status=\"").append(key.substring(space + 1)).append("\"} ")
+                    .append(count.sum()).append('\n');
+        }));
+
+        builder.append("# HELP http_server_requests_seconds Request latency by handler.\n")
+                .append("# TYPE http_server_requests_seconds summary\n");
+        sorted.forEach((handler, endpoint) -> {
+            String label = escape(handler);
+            LatencyHistogram latency = endpoint.latency;
+            for (double quantile : QUANTILES) {
+                builder.append("http_server_requests_seconds{handler=\"").append(label)
+                        .append("\",quantile=\"").append(quantile).append("\"} ")
+                        .append(seconds(latency.percentile(quantile))).append('\n');
+            }
+            builder.append("http_server_requests_seconds_sum{handler=\"").append(label).append("\"} ")
+                    .append(seconds(latency.getSumMicros())).append('\n');
+            builder.append("http_server_requests_seconds_count{handler=\"").append(label).append("\"} ")
+                    .append(latency.getCount()).append('\n');
+        });
+        return builder.toString();
+    }
+
+    private static String seconds(long micros) {
+        return Double.toString(micros / 1e6);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    static final class Endpoint {
+        private final LongAdder inFlight = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final Map<String, LongAdder> requests = new ConcurrentHashMap<>();
+
+        void started() {
+            inFlight.increment();
+        }
+
+        void completed() {
+            inFlight.decrement();
+        }
+    }
+}
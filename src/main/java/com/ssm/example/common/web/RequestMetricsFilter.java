@@ -0,0 +1,94 @@
+package com.ssm.example.common.web;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.annotation.Resource;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 请求计时及状态码统计，放在 filter 链最前面，耗时包含其他 filter、视图渲染及异常处理
+ * <p>
+ * 通过 DelegatingFilterProxy 使用根容器中的 bean。异步请求在异步处理结束(AsyncListener.onComplete)时记录，
+ * 耗时包含等待结果及异步分派的时间。
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/25 10:30
+ **/
+public class RequestMetricsFilter extends OncePerRequestFilter {
+
+    @Resource
+    private RequestMetrics requestMetrics;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        requestMetrics.started();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            if (!failed && request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new CompletionListener(request, response, start));
+            } else {
+                // 异常抛出到容器，由容器返回500
+                completed(request, failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus(), start);
+            }
+        }
+    }
+
+    private void completed(HttpServletRequest request, int status, long start) {
+        RequestMetrics.Endpoint endpoint = (RequestMetrics.Endpoint) request.getAttribute(
+                RequestMetrics.ENDPOINT_ATTRIBUTE);
+        if (endpoint == null) {
+            endpoint = requestMetrics.endpoint(RequestMetrics.UNMAPPED);
+        } else {
+            endpoint.completed();
+        }
+        requestMetrics.completed(endpoint, request.getMethod(), status, System.nanoTime() - start);
+    }
+
+    /**
+     * 超时及出错后仍会调用 onComplete，只在 onComplete 中记录一次
+     */
+    private class CompletionListener implements AsyncListener {
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+        private final long start;
+
+        CompletionListener(HttpServletRequest request, HttpServletResponse response, long start) {
+            this.request = request;
+            this.response = response;
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            completed(request, response.getStatus(), start);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        /**
+         * 异步分派中再次开始异步处理时，之前注册的监听器被清除，需要重新注册
+         */
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.ssm.example.common.web;
+
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+import org.springframework.web.servlet.resource.DefaultServletHttpRequestHandler;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 确定请求的处理方法(类名.方法名，同名方法有重载时加上参数类型)，交给 {@link RequestMetricsFilter} 按处理方法统计
+ * <p>
+ * mvc:resources 映射的静态资源记为 static；交给容器默认 servlet 的请求在 mvc 中没有映射(多为404)，记为 unmapped。
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/25 10:20
+ **/
+public class RequestMetricsInterceptor extends HandlerInterceptorAdapter {
+
+    private static final String STATIC = "static";
+
+    @Resource
+    private RequestMetrics requestMetrics;
+
+    private final Map<Method, RequestMetrics.Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // forward/include 及异步分派时再次进入，只统计第一次
+        if (request.getAttribute(RequestMetrics.ENDPOINT_ATTRIBUTE) != null) {
+            return true;
+        }
+        RequestMetrics.Endpoint endpoint = endpoint(handler);
+        endpoint.started();
+        request.setAttribute(RequestMetrics.ENDPOINT_ATTRIBUTE, endpoint);
+        return true;
+    }
+
+    private RequestMetrics.Endpoint endpoint(Object handler) {
+        if (handler instanceof HandlerMethod) {
+            HandlerMethod handlerMethod = (HandlerMethod) handler;
+            RequestMetrics.Endpoint endpoint = endpoints.get(handlerMethod.getMethod());
+            if (endpoint == null) {
+                endpoint = endpoints.computeIfAbsent(handlerMethod.getMethod(),
+                        method -> requestMetrics.endpoint(name(handlerMethod.getBeanType(), method)));
+            }
+            return endpoint;
+        }
+        if (handler instanceof ResourceHttpRequestHandler) {
+            return requestMetrics.endpoint(STATIC);
+        }
+        if (handler instanceof DefaultServletHttpRequestHandler) {
+            return requestMetrics.endpoint(RequestMetrics.UNMAPPED);
+        }
+        return requestMetrics.endpoint(handler.getClass().getSimpleName());
+    }
+
+    /**
+     * 类名.方法名，有重载时为 类名.方法名(参数类型,...)，避免重载的处理方法合并统计
+     */
+    static String name(Class<?> beanType, Method method) {
+        String name = beanType.getSimpleName() + "." + method.getName();
+        if (!isOverloaded(beanType, method)) {
+            return name;
+        }
+        StringJoiner parameters = new StringJoiner(",", "(", ")");
+        for (Class<?> type : method.getParameterTypes()) {
+            parameters.add(type.getSimpleName());
+        }
+        return name + parameters;
+    }
+
+    private static boolean isOverloaded(Class<?> beanType, Method method) {
+        int count = 0;
+        for (Method candidate : ReflectionUtils.getUniqueDeclaredMethods(beanType)) {
+            if (!candidate.isBridge() && candidate.getName().equals(method.getName()) && ++count > 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,244 @@
+package com.ssm.example.controller;
+
+import com.ssm.example.common.cache.CacheAspect;
+import com.ssm.example.common.cache.NearCache;
+import com.ssm.example.common.db.PoolMetricsTrackerFactory;
+import com.ssm.example.common.db.ReadWriteRoutingDataSource;
+import com.ssm.example.common.db.SqlMetricsInterceptor;
+import com.ssm.example.common.executor.LoggingAsyncExceptionHandler;
+import com.ssm.example.common.executor.ManagedExecutor;
+import com.ssm.example.common.queue.RedisDelayQueue;
+import com.ssm.example.common.schedule.ClusterJobAspect;
+import com.ssm.example.common.schedule.ScheduledJobAspect;
+import com.ssm.example.common.utils.HttpClientPool;
+import com.ssm.example.common.web.RequestMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+/**
+ * 运行状态监控
+ *
+ * @author ming
+ * @version 1.0.0
+ * @date 2022/4/12 11:05
+ **/
+
+@Controller
+@RequestMapping("/monitor")
+@Slf4j
+public class MonitorController {
+
+    @Autowired
+    private NearCache nearCache;
+
+    @Autowired
+    private RedisDelayQueue redisDelayQueue;
+
+    @Autowired
+    private CacheAspect cacheAspect;
+
+    @Autowired
+    private PoolMetricsTrackerFactory poolMetricsTrackerFactory;
+
+    @Autowired
+    private ReadWriteRoutingDataSource routingDataSource;
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    /**
+     * bean 名称 -> 线程池或虚拟线程执行器
+     */
+    @Autowired
+    private Map<String, ManagedExecutor> executors;
+
+    @Autowired
+    private LoggingAsyncExceptionHandler asyncExceptionHandler;
+
+    @Autowired
+    private ClusterJobAspect clusterJobAspect;
+
+    @Autowired
+    private ScheduledJobAspect scheduledJobAspect;
+
+    @Autowired
+    private ThreadPoolTaskScheduler taskScheduler;
+
+    @Autowired
+    private RequestMetrics requestMetrics;
+
+    /**
+     * 各处理方法的请求耗时分位数、执行中请求数、按请求方法及状态码的请求数
+     */
+    @RequestMapping(value = "/requests", method = RequestMethod.GET)
+    @ResponseBody
+    public Map<String, Object> requests() {
+        return requestMetrics.stats();
+    }
+
+    /**
+     * 请求统计的 Prometheus 文本格式，供 Prometheus 抓取
+     */
+    @RequestMapping(value = "/prometheus", method = RequestMethod.GET, produces = "text/plain; version=0.0.4")
+    @ResponseBody
+    public String prometheus() {
+        return requestMetrics.prometheus();
+    }
+
+    /**
+     * http 连接池使用情况
+     */
+    @RequestMapping(value = "/http-pool", method = RequestMethod.GET)
+    @ResponseBody
+    public Map<String, Object> httpPool() {
+        return HttpClientPool.stats();
+    }
+
+    /**
+     * 数据库连接池使用情况及获取连接耗时
+     */
+    @RequestMapping(value = "/db-pool", method = RequestMethod.GET)
+    @ResponseBody
+    public Map<String, Object> dbPool() {
+        return poolMetricsTrackerFactory.stats();
+    }
+
+    /**
+     * 读写分离：主从库分配次数及从库状态
+     */
+    @RequestMapping(value = "/datasource", method = RequestMethod.GET)
+    @ResponseBody
+    public Map<String, Object> datasource() {
+        return routingDataSource.stats();
+    }
+
+    /**
+     * 各 SQL 语句的调用次数、执行耗时、行数及获取连接耗时
+     */
+    @RequestMapping(value = "/sql", method = RequestMethod.GET)
+    @ResponseBody
+    public Map<String, Object> sql() {
+        SqlMetricsInterceptor metrics = sqlMetrics();
+        return metrics == null ? Collections.emptyMap() : metrics.stats();
+    }
+
+    /**
+     * 清空 SQL 统计，用于按时间段观察
+     * <p>
+     * 需要请求头 X-Admin-Token，见 {@link com.ssm.example.common.web.AdminTokenInterceptor}
+     */
+    @RequestMapping(value = "/sql/reset", method = RequestMethod.POST)
+    @ResponseBody
+    public Map<String, Object> resetSql() {
+        SqlMetricsInterceptor metrics = sqlMetrics();
+        if (metrics == null) {
+            return Collections.emptyMap();
+        }
+        metrics.reset();
+        return metrics.stats();
+    }
+
+    private SqlMetricsInterceptor sqlMetrics() {
+        // 插件实例由 mybatis 创建，从配置中取
+        for (Interceptor interceptor : sqlSessionFactory.getConfiguration().getInterceptors()) {
+            if (interceptor instanceof SqlMetricsInterceptor) {
+                return (SqlMetricsInterceptor) interceptor;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 各线程池的线程数、队列、排队及执行耗时、拒绝次数，以及 @Async 方法的异常次数
+     */
+    @RequestMapping(value = "/executors", method = RequestMethod.GET)
+    @ResponseBody
+    public Map<String, Object> executors() {
+        Map<String, Object> result = new TreeMap<>();
+        executors.forEach((name, executor) -> result.put(name, executor.stats()));
+        result.put("asyncErrors", asyncExceptionHandler.stats());
+        return result;
+    }
+
+    /**
+     * 定时任务：调度线程池使用情况，各任务的执行次数、耗时、重叠触发，集群任务的领取、跳过、错过触发次数及触发延迟
+     */
+    @RequestMapping(value = "/jobs", method = RequestMethod.GET)
+    @ResponseBody
+    public Map<String, Object> jobs() {
+        ScheduledThreadPoolExecutor executor = taskScheduler.getScheduledThreadPoolExecutor();
+        Map<String, Object> scheduler = new LinkedHashMap<>();
+        scheduler.put("poolSize", executor.getCorePoolSize());
+        scheduler.put("active", executor.getActiveCount());
+        scheduler.put("scheduled", executor.getQueue().size());
+        scheduler.put("completed", executor.getCompletedTaskCount());
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("scheduler", scheduler);
+        result.put("jobs", scheduledJobAspect.stats());
+        result.put("cluster", clusterJobAspect.stats());
+        return result;
+    }
+
+    /**
+     * 调整线程池大小，虚拟线程执行器按 maxPoolSize、queueCapacity 调整并发数及等待数，重启后恢复为配置文件中的值
+     * <p>
+     * 需要请求头 X-Admin-Token，见 {@link com.ssm.example.common.web.AdminTokenInterceptor}
+     */
+    @RequestMapping(value = "/executors/{name}", method = RequestMethod.POST)
+    @ResponseBody
+    public Map<String, Object> resizeExecutor(@PathVariable("name") String name,
+                                              @RequestParam("corePoolSize") int corePoolSize,
+                                              @RequestParam("maxPoolSize") int maxPoolSize,
+                                              @RequestParam("queueCapacity") int queueCapacity) {
+        ManagedExecutor executor = executors.get(name);
+        if (executor == null) {
+            Map<String, Object> error = new LinkedHashMap<>();
+            error.put("error", "线程池不存在：" + name);
+            return error;
+        }
+        executor.resize(corePoolSize, maxPoolSize, queueCapacity);
+        return executor.stats();
+    }
+
+    /**
+     * 本地缓存命中情况
+     */
+    @RequestMapping(value = "/near-cache", method = RequestMethod.GET)
+    @ResponseBody
+    public Map<String, Object> nearCache() {
+        return nearCache.stats();
+    }
+
+    /**
+     * 注解缓存命中及合并加载情况
+     */
+    @RequestMapping(value = "/cache", method = RequestMethod.GET)
+    @ResponseBody
+    public Map<String, Object> cache() {
+        return cacheAspect.stats();
+    }
+
+    /**
+     * 延时队列吞吐及延迟
+     */
+    @RequestMapping(value = "/delay-queue", method = RequestMethod.GET)
+    @ResponseBody
+    public Map<String, Object> delayQueue() {
+        return redisDelayQueue.stats();
+    }
+}
@@ -1,12 +1,21 @@
 package com.ssm.example.controller;
 
+import com.ssm.example.common.utils.HttpUtils;
 import com.ssm.example.sdk.ExampleService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author ming
@@ -19,6 +28,8 @@ import org.springframework.web.bind.annotation.ResponseBody;
 @Slf4j
 public class TestController {
 
+    private static final long EXAMPLE_TIMEOUT_MILLIS = 5000;
+
     @Autowired
     private ExampleService exampleService;
 
@@ -28,4 +39,56 @@ public class TestController {
         log.info("进入测试controller");
         return exampleService.example();
     }
+
+    /**
+     * 同 example，在 mvcAsyncExecutor 中执行，容器线程立即返回
+     */
+    @RequestMapping(value = "/example/callable", method = RequestMethod.GET)
+    @ResponseBody
+    public Callable<String> exampleCallable() {
+        return exampleService::example;
+    }
+
+    /**
+     * 通过 HttpUtils 异步请求 example，等待响应期间不占用任何线程
+     */
+    @RequestMapping(value = "/example/future", method = RequestMethod.GET)
+    @ResponseBody
+    public CompletableFuture<String> exampleFuture(HttpServletRequest request) {
+        return exampleRequest(request).doRequestAsync();
+    }
+
+    /**
+     * 同 exampleFuture，单独设置超时，超时返回 504
+     */
+    @RequestMapping(value = "/example/deferred", method = RequestMethod.GET)
+    @ResponseBody
+    public DeferredResult<ResponseEntity<String>> exampleDeferred(HttpServletRequest request) {
+        DeferredResult<ResponseEntity<String>> result = new DeferredResult<>(EXAMPLE_TIMEOUT_MILLIS,
+                new ResponseEntity<>("timeout", HttpStatus.GATEWAY_TIMEOUT));
+        exampleRequest(request).doRequestAsync().whenComplete((body, e) -> {
+            if (e != null) {
+                log.warn("请求 example 失败", e);
+                result.setResult(new ResponseEntity<>("bad gateway", HttpStatus.BAD_GATEWAY));
+            } else {
+                result.setResult(new ResponseEntity<>(body, HttpStatus.OK));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 请求本机的 example，地址取接收本次请求的本地地址和端口，不使用客户端可以伪造的 Host/X-Forwarded-Host
+     */
+    private HttpUtils exampleRequest(HttpServletRequest request) {
+        String host = request.getLocalAddr();
+        if (host.indexOf(':') >= 0) {
+            host = "[" + host + "]";
+        }
+        HttpUtils httpUtils = new HttpUtils(UriComponentsBuilder.newInstance().scheme(request.getScheme())
+                .host(host).port(request.getLocalPort()).path(request.getContextPath()).path("/test/example")
+                .toUriString());
+        httpUtils.setTimeout((int) EXAMPLE_TIMEOUT_MILLIS);
+        return httpUtils;
+    }
 }
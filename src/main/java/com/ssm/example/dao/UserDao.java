@@ -0,0 +1,82 @@
+package com.ssm.example.dao;
+
+import com.ssm.example.domain.User;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * t_user 表
+ *
+ * @author ming
+ * @version 1.0.0
+ * @date 2022/4/20 15:10
+ **/
+public interface UserDao {
+
+    /**
+     * 多行插入，不回填自增主键
+     *
+     * @param users 用户
+     * @return 插入行数
+     */
+    int insertBatch(List<User> users);
+
+    /**
+     * 按主键更新
+     *
+     * @param user 用户
+     * @return 更新行数，BATCH 执行器下为固定值，实际行数见 flushStatements 的结果
+     */
+    int updateById(User user);
+
+    /**
+     * 按主键查询
+     *
+     * @param id 主键
+     * @return 用户
+     */
+    User selectById(@Param("id") int id);
+
+    /**
+     * 按主键列表查询
+     *
+     * @param ids 主键，不能为空
+     * @return 用户
+     */
+    List<User> selectByIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * 键集分页，按 (id, username) 升序取 (lastId, lastUsername) 之后的数据
+     *
+     * @param lastId       上一页最后一行的 id，为 null 时从头开始
+     * @param lastUsername 上一页最后一行的 username
+     * @param limit        条数
+     * @return 用户
+     */
+    List<User> selectPageAfter(@Param("lastId") Integer lastId, @Param("lastUsername") String lastUsername,
+                               @Param("limit") int limit);
+
+    /**
+     * 估算总行数
+     *
+     * @return 行数
+     */
+    long estimateCount();
+
+    /**
+     * 精确总行数
+     *
+     * @return 行数
+     */
+    long countAll();
+
+    /**
+     * 流式读取全表，逐行交给 handler 处理
+     *
+     * @param handler 处理每一行
+     */
+    void selectAll(ResultHandler handler);
+}
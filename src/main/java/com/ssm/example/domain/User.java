@@ -17,8 +17,11 @@ public class User {
     private String password;
     private String email;
     private String phone;
-    private boolean valid;
-    private int status;
+    /**
+     * 包装类型：为 null 时 updateById 不更新该字段
+     */
+    private Boolean valid;
+    private Integer status;
     private String createTime;
     private String modifyTime;
     private String creator;
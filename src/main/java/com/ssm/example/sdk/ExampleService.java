@@ -11,4 +11,20 @@ public interface ExampleService {
      * @return String
      */
     String example();
+
+    /**
+     * 问候语，未设置时使用默认问候语，结果缓存在 redis
+     *
+     * @param username 用户名
+     * @return String
+     */
+    String greeting(String username);
+
+    /**
+     * 修改问候语并保存到 redis，删除缓存
+     *
+     * @param username 用户名
+     * @param greeting 问候语
+     */
+    void updateGreeting(String username, String greeting);
 }
@@ -0,0 +1,66 @@
+package com.ssm.example.sdk;
+
+import com.ssm.example.common.page.CountMode;
+import com.ssm.example.common.page.SeekPage;
+import com.ssm.example.domain.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 用户
+ *
+ * @author ming
+ * @version 1.0.0
+ * @date 2022/4/20 15:30
+ **/
+public interface UserService {
+
+    /**
+     * 批量新增，按批多行插入，不回填自增主键
+     * <p>
+     * 总是在新事务中执行(REQUIRES_NEW)，调用方已有事务时先挂起，本方法单独提交，不随调用方回滚
+     *
+     * @param users 用户
+     * @return 插入行数
+     */
+    int saveBatch(List<User> users);
+
+    /**
+     * 批量按主键更新，JDBC batch 发送
+     * <p>
+     * 与 saveBatch 一样总是在新事务中执行
+     *
+     * @param users 用户
+     * @return 更新行数
+     */
+    int updateBatch(List<User> users);
+
+    /**
+     * 按主键列表查询
+     *
+     * @param ids 主键
+     * @return 用户
+     */
+    List<User> listByIds(Collection<Integer> ids);
+
+    /**
+     * 键集分页，按主键顺序翻页，深分页与第一页代价相同，结果短时间缓存
+     *
+     * @param pageToken 上一页返回的 nextToken，第一页为空
+     * @param pageSize  每页条数
+     * @param countMode 总数计算方式
+     * @return 分页结果
+     * @throws IllegalArgumentException pageToken 不合法
+     */
+    SeekPage<User> page(String pageToken, int pageSize, CountMode countMode);
+
+    /**
+     * 流式遍历全表，用于导出等场景，不会把全表加载到内存
+     *
+     * @param consumer 处理每一行
+     * @return 行数
+     */
+    long forEach(Consumer<User> consumer);
+}
@@ -1,5 +1,7 @@
 package com.ssm.example.service.impl;
 
+import com.ssm.example.common.cache.CacheEvict;
+import com.ssm.example.common.cache.Cached;
 import com.ssm.example.common.utils.RedisCache;
 import com.ssm.example.sdk.ExampleService;
 import lombok.extern.slf4j.Slf4j;
@@ -17,6 +19,11 @@ import javax.annotation.Resource;
 @Service("exampleService")
 public class ExampleServiceImpl implements ExampleService {
 
+    /**
+     * 用户自定义问候语的存储键前缀，与 @Cached 生成的缓存键区分
+     */
+    private static final String GREETING_KEY = "example:greeting:";
+
     @Resource
     private RedisCache redisCache;
 
@@ -26,4 +33,19 @@ public class ExampleServiceImpl implements ExampleService {
         log.info("从redis获取：{}", redisCache.getString("test"));
         return "hello";
     }
+
+    @Override
+    @Cached(user = "#username", name = "greeting", ttl = 3600)
+    public String greeting(String username) {
+        log.info("生成问候语：{}", username);
+        Object greeting = redisCache.getObject(GREETING_KEY + username);
+        return greeting == null ? "hello, " + username : (String) greeting;
+    }
+
+    @Override
+    @CacheEvict(user = "#username", name = "greeting")
+    public void updateGreeting(String username, String greeting) {
+        log.info("修改问候语：{} -> {}", username, greeting);
+        redisCache.setObject(GREETING_KEY + username, greeting);
+    }
 }
@@ -0,0 +1,191 @@
+package com.ssm.example.service.impl;
+
+import com.alibaba.fastjson.JSONArray;
+import com.ssm.example.common.cache.CacheEvict;
+import com.ssm.example.common.db.ReadOnly;
+import com.ssm.example.common.page.CountMode;
+import com.ssm.example.common.page.PageToken;
+import com.ssm.example.common.page.SeekPage;
+import com.ssm.example.common.utils.RedisCache;
+import com.ssm.example.dao.UserDao;
+import com.ssm.example.domain.User;
+import com.ssm.example.sdk.UserService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.executor.BatchResult;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Resource;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * @author ming
+ * @version 1.0.0
+ * @date 2022/4/20 15:40
+ **/
+
+@Slf4j
+@Service("userService")
+public class UserServiceImpl implements UserService {
+
+    /**
+     * 每条多行插入语句的行数、每次 JDBC batch 的语句数
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * IN 查询每次最多的主键个数
+     */
+    private static final int IN_SIZE = 1000;
+
+    /**
+     * 缓存key中的用户名部分及业务名，分页缓存时间(秒)
+     */
+    private static final String CACHE_USER = "t_user";
+    private static final String CACHE_PAGE = "page";
+    private static final String CACHE_COUNT = "count";
+    private static final long CACHE_TIME = 60;
+
+    /**
+     * 每页最大条数
+     */
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    @Resource
+    private UserDao userDao;
+
+    @Resource
+    private RedisCache redisCache;
+
+    @Resource
+    private SqlSessionTemplate batchSqlSessionTemplate;
+
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW, rollbackFor = Exception.class)
+    @CacheEvict(user = "'" + CACHE_USER + "'", name = {CACHE_PAGE, CACHE_COUNT})
+    public int saveBatch(List<User> users) {
+        // BATCH 执行器不能与同一事务中的普通执行器混用，批量方法总是挂起外层事务、单独开启事务
+        UserDao batchDao = batchSqlSessionTemplate.getMapper(UserDao.class);
+        for (int from = 0; from < users.size(); from += BATCH_SIZE) {
+            batchDao.insertBatch(users.subList(from, Math.min(from + BATCH_SIZE, users.size())));
+        }
+        // 驱动改写后的批量插入不返回准确行数，执行失败会抛出异常
+        batchSqlSessionTemplate.flushStatements();
+        return users.size();
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW, rollbackFor = Exception.class)
+    @CacheEvict(user = "'" + CACHE_USER + "'", name = CACHE_PAGE)
+    public int updateBatch(List<User> users) {
+        UserDao batchDao = batchSqlSessionTemplate.getMapper(UserDao.class);
+        int rows = 0;
+        for (int i = 0; i < users.size(); i++) {
+            batchDao.updateById(users.get(i));
+            if ((i + 1) % BATCH_SIZE == 0) {
+                rows += affectedRows(batchSqlSessionTemplate.flushStatements());
+            }
+        }
+        return rows + affectedRows(batchSqlSessionTemplate.flushStatements());
+    }
+
+    @Override
+    @ReadOnly
+    public List<User> listByIds(Collection<Integer> ids) {
+        List<User> result = new ArrayList<>(ids.size());
+        List<Integer> idList = new ArrayList<>(ids);
+        for (int from = 0; from < idList.size(); from += IN_SIZE) {
+            result.addAll(userDao.selectByIds(idList.subList(from, Math.min(from + IN_SIZE, idList.size()))));
+        }
+        return result;
+    }
+
+    @Override
+    @ReadOnly
+    @SuppressWarnings("unchecked")
+    public SeekPage<User> page(String pageToken, int pageSize, CountMode countMode) {
+        int size = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+        // 先校验再用于缓存key，key 中使用重新编码的标识，同一位置只对应一个缓存
+        JSONArray last = PageToken.decode(pageToken, 2);
+        Integer lastId = null;
+        String lastUsername = null;
+        if (last != null) {
+            if (!(last.get(0) instanceof Integer) || !(last.get(1) instanceof String)) {
+                throw new IllegalArgumentException("分页标识不合法：" + pageToken);
+            }
+            lastId = (Integer) last.get(0);
+            lastUsername = (String) last.get(1);
+        }
+        String key = redisCache.generateCacheSeekKey(CACHE_USER, CACHE_PAGE,
+                last == null ? null : PageToken.encode(lastId, lastUsername), size);
+        SeekPage<User> cached = (SeekPage<User>) redisCache.getObject(key);
+        if (cached == null) {
+            // 多取一条用于判断是否还有下一页
+            List<User> list = userDao.selectPageAfter(lastId, lastUsername, size + 1);
+            cached = new SeekPage<>();
+            if (list.size() > size) {
+                list = new ArrayList<>(list.subList(0, size));
+                User tail = list.get(size - 1);
+                cached.setNextToken(PageToken.encode(tail.getId(), tail.getUsername()));
+            }
+            cached.setList(list);
+            redisCache.setPage(CACHE_USER, CACHE_PAGE, key, cached, CACHE_TIME);
+        }
+        // 缓存的对象可能被本地缓存共享，复制后再设置总数
+        SeekPage<User> page = new SeekPage<>();
+        page.setList(cached.getList());
+        page.setNextToken(cached.getNextToken());
+        page.setCountMode(countMode);
+        page.setTotal(count(countMode));
+        return page;
+    }
+
+    private Long count(CountMode countMode) {
+        switch (countMode) {
+            case ESTIMATED:
+                return userDao.estimateCount();
+            case EXACT:
+                String key = redisCache.generateCacheKey(CACHE_USER, CACHE_COUNT);
+                Object total = redisCache.getObject(key);
+                if (total == null) {
+                    total = userDao.countAll();
+                    redisCache.setObject(key, total, CACHE_TIME);
+                }
+                return (Long) total;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    @ReadOnly
+    public long forEach(Consumer<User> consumer) {
+        long[] count = {0};
+        userDao.selectAll(context -> {
+            consumer.accept((User) context.getResultObject());
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    private static int affectedRows(List<BatchResult> results) {
+        int rows = 0;
+        for (BatchResult result : results) {
+            for (int count : result.getUpdateCounts()) {
+                if (count >= 0) {
+                    rows += count;
+                } else if (count == Statement.SUCCESS_NO_INFO) {
+                    // 驱动改写批量语句时只知道执行成功，不知道行数，按1行计；EXECUTE_FAILED 不计入
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+}
@@ -1,7 +1,9 @@
 package com.ssm.example.task;
 
+import com.ssm.example.common.schedule.ClusterJob;
+import com.ssm.example.common.schedule.JobPolicy;
+import com.ssm.example.common.schedule.ShardContext;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -17,15 +19,17 @@ import org.springframework.stereotype.Component;
 @Slf4j
 public class ExampleTask {
 
-    @Async("asyncTaskExecutor")
+    @JobPolicy(overlap = JobPolicy.Overlap.COALESCE)
+    @ClusterJob(misfire = ClusterJob.MisfirePolicy.FIRE_ONCE_NOW)
     @Scheduled(cron = "0/5 * * * * ? ")
     public void test1() {
         log.info("----定时任务1开始执行-----");
     }
 
-    @Async
+    @JobPolicy(jitterMillis = 2000)
+    @ClusterJob(shards = 2, misfire = ClusterJob.MisfirePolicy.FIRE_ONCE_NOW)
     @Scheduled(cron = "0/8 * * * * ? ")
     public void test2() {
-        log.info("----定时任务2开始执行-----");
+        log.info("----定时任务2开始执行，分片 {}-----", ShardContext.current());
     }
 }
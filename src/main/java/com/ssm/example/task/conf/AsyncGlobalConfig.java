@@ -1,15 +1,18 @@
 package com.ssm.example.task.conf;
 
+import com.ssm.example.common.executor.LoggingAsyncExceptionHandler;
+import com.ssm.example.common.executor.ManagedExecutor;
+import com.ssm.example.common.executor.ManagedThreadPool;
+import com.ssm.example.common.executor.VirtualThreadExecutor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
-import org.springframework.context.annotation.ComponentScan;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.AsyncConfigurerSupport;
 import org.springframework.scheduling.annotation.EnableAsync;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
-import java.lang.reflect.Method;
 import java.util.concurrent.Executor;
-import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * 默认全局线程池
@@ -18,39 +21,64 @@ import java.util.concurrent.ThreadPoolExecutor;
  * @version 1.0.0
  * @date 2022/4/5 18:35
  **/
-
+@Slf4j
 @EnableAsync
 @Configuration
 public class AsyncGlobalConfig extends AsyncConfigurerSupport {
-    private static final String THREAD_PREFIX = "defineGlobalAsync-";
+    private static final String THREAD_PREFIX = "defineGlobalAsync";
+
+    @Value("${executor.virtualThreads.enabled}")
+    private boolean virtualThreads;
+
+    @Value("${executor.global.corePoolSize}")
+    private int corePoolSize;
+
+    @Value("${executor.global.maxPoolSize}")
+    private int maxPoolSize;
+
+    @Value("${executor.global.queueCapacity}")
+    private int queueCapacity;
+
+    @Value("${executor.global.keepAliveSeconds}")
+    private long keepAliveSeconds;
+
+    @Value("${executor.global.rejectPolicy}")
+    private ManagedExecutor.RejectPolicy rejectPolicy;
+
+    @Value("${executor.global.maxConcurrency}")
+    private int maxConcurrency;
+
+    @Value("${executor.global.maxWaiting}")
+    private int maxWaiting;
+
+    /**
+     * 未指定线程池的 @Async 方法使用，注册为 bean 以便统计、调整及随容器关闭。
+     * 开启 executor.virtualThreads.enabled 且 JDK 支持时改为虚拟线程执行
+     */
+    @Bean(name = "globalAsyncExecutor")
+    public ManagedExecutor globalAsyncExecutor() {
+        if (virtualThreads) {
+            if (VirtualThreadExecutor.isSupported()) {
+                return new VirtualThreadExecutor(THREAD_PREFIX, maxConcurrency, maxWaiting, rejectPolicy);
+            }
+            log.warn("当前 JDK {} 不支持虚拟线程，globalAsyncExecutor 使用线程池", System.getProperty("java.version"));
+        }
+        return new ManagedThreadPool(THREAD_PREFIX, corePoolSize, maxPoolSize, queueCapacity, keepAliveSeconds,
+                rejectPolicy);
+    }
+
+    @Bean
+    public LoggingAsyncExceptionHandler asyncExceptionHandler() {
+        return new LoggingAsyncExceptionHandler();
+    }
 
     @Override
     public Executor getAsyncExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setThreadNamePrefix(THREAD_PREFIX);
-        executor.setCorePoolSize(3);
-        executor.setMaxPoolSize(10);
-        executor.setQueueCapacity(100);
-        executor.setKeepAliveSeconds(60);
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
-        executor.setWaitForTasksToCompleteOnShutdown(true);
-        executor.setAwaitTerminationSeconds(60);
-        executor.initialize();
-        return executor;
+        return globalAsyncExecutor();
     }
 
     @Override
     public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
-        return new CustomAsyncExceptionHandler();
+        return asyncExceptionHandler();
     }
 }
-
-class CustomAsyncExceptionHandler implements AsyncUncaughtExceptionHandler {
-
-    @Override
-    public void handleUncaughtException(Throwable e, Method method, Object... args) {
-        //处理异常
-        e.printStackTrace();
-
-    }
-}
\ No newline at end of file
@@ -0,0 +1,63 @@
+package com.ssm.example.task.conf;
+
+import com.ssm.example.common.executor.ManagedExecutor;
+import com.ssm.example.common.executor.ManagedThreadPool;
+import com.ssm.example.common.executor.VirtualThreadExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Spring MVC 异步请求线程池
+ *
+ * @author ming
+ * @version 1.0.0
+ * @date 2022/4/25 16:00
+ **/
+@Slf4j
+@Configuration
+public class MvcAsyncConfig {
+
+    @Value("${executor.virtualThreads.enabled}")
+    private boolean virtualThreads;
+
+    @Value("${executor.mvc.corePoolSize}")
+    private int corePoolSize;
+
+    @Value("${executor.mvc.maxPoolSize}")
+    private int maxPoolSize;
+
+    @Value("${executor.mvc.queueCapacity}")
+    private int queueCapacity;
+
+    @Value("${executor.mvc.keepAliveSeconds}")
+    private long keepAliveSeconds;
+
+    @Value("${executor.mvc.rejectPolicy}")
+    private ManagedExecutor.RejectPolicy rejectPolicy;
+
+    @Value("${executor.mvc.maxConcurrency}")
+    private int maxConcurrency;
+
+    @Value("${executor.mvc.maxWaiting}")
+    private int maxWaiting;
+
+    /**
+     * 执行 controller 返回的 Callable，与 @Async 线程池相互隔离，由 spring-web.xml 的 mvc:async-support 使用
+     * <p>
+     * DeferredResult、CompletableFuture 由其他线程设置结果，不使用该线程池。
+     * 参数见 config.properties 的 executor.mvc.*，运行中可通过 /monitor/executors 调整
+     */
+    @Bean(name = "mvcAsyncExecutor")
+    public ManagedExecutor mvcAsyncExecutor() {
+        if (virtualThreads) {
+            if (VirtualThreadExecutor.isSupported()) {
+                return new VirtualThreadExecutor("mvcAsyncExecutor", maxConcurrency, maxWaiting, rejectPolicy);
+            }
+            log.warn("当前 JDK {} 不支持虚拟线程，mvcAsyncExecutor 使用线程池", System.getProperty("java.version"));
+        }
+        return new ManagedThreadPool("mvcAsyncExecutor", corePoolSize, maxPoolSize, queueCapacity,
+                keepAliveSeconds, rejectPolicy);
+    }
+}
@@ -0,0 +1,47 @@
+package com.ssm.example.task.conf;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+/**
+ * 定时任务调度线程池，默认只有一个线程，一个任务执行慢会推迟其他所有任务
+ * <p>
+ * 定时任务直接在调度线程中执行，不再用 @Async 转交给异步线程池，重叠及随机等待见 JobPolicy
+ *
+ * @author ming
+ * @version 1.0.0
+ * @date 2022/4/24 16:30
+ **/
+@Slf4j
+@Configuration
+public class SchedulerConfig implements SchedulingConfigurer {
+
+    @Value("${scheduler.poolSize}")
+    private int poolSize;
+
+    @Value("${scheduler.awaitTerminationSeconds}")
+    private int awaitTerminationSeconds;
+
+    @Bean(name = "taskScheduler")
+    public ThreadPoolTaskScheduler taskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("scheduler-");
+        scheduler.setRemoveOnCancelPolicy(true);
+        //关闭时等待执行中的任务完成
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(awaitTerminationSeconds);
+        scheduler.setErrorHandler(e -> log.error("定时任务执行失败", e));
+        return scheduler;
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
+        taskRegistrar.setTaskScheduler(taskScheduler());
+    }
+}
@@ -1,50 +1,65 @@
 package com.ssm.example.task.conf;
 
+import com.ssm.example.common.executor.ManagedExecutor;
+import com.ssm.example.common.executor.ManagedThreadPool;
+import com.ssm.example.common.executor.VirtualThreadExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
-
-import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * @author ming
  * @version 1.0.0
  * @date 2022/4/5 18:44
  **/
+@Slf4j
 @Configuration
 @EnableAsync
 public class TaskExecutorConfig {
 
+    @Value("${executor.virtualThreads.enabled}")
+    private boolean virtualThreads;
+
+    @Value("${executor.async.corePoolSize}")
+    private int corePoolSize;
+
+    @Value("${executor.async.maxPoolSize}")
+    private int maxPoolSize;
+
+    @Value("${executor.async.queueCapacity}")
+    private int queueCapacity;
+
+    @Value("${executor.async.keepAliveSeconds}")
+    private long keepAliveSeconds;
+
+    @Value("${executor.async.rejectPolicy}")
+    private ManagedExecutor.RejectPolicy rejectPolicy;
+
+    @Value("${executor.async.maxConcurrency}")
+    private int maxConcurrency;
+
+    @Value("${executor.async.maxWaiting}")
+    private int maxWaiting;
+
     /**
-     * 自定义异步线程池
+     * 自定义异步线程池，供 @Async("asyncTaskExecutor") 使用，与全局线程池相互隔离
+     * <p>
+     * 参数见 config.properties 的 executor.async.*，运行中可通过 /monitor/executors 调整。
+     * 开启 executor.virtualThreads.enabled 且 JDK 支持时改为虚拟线程执行
      */
-
     @Bean(name = "asyncTaskExecutor")
-    public AsyncTaskExecutor taskExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setThreadNamePrefix("asyncTaskExecutor");
-        executor.setMaxPoolSize(10);
-        executor.setCorePoolSize(3);
-        executor.setQueueCapacity(100);
-        // 设置自定义拒绝策略
-        // executor.setRejectedExecutionHandler(new RejectedExecutionHandler() {
-        //     @Override
-        //     public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
-        //         // .....
-        //         // 也可以使用默认的拒绝策略，在spring中指定策略名称
-        //     }
-        // });
-        // 使用默认的拒绝策略，有四种
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
-        //等待所有任务调度完成在关闭线程池，保证所有的任务被正确处理
-        executor.setWaitForTasksToCompleteOnShutdown(true);
-        //线程池关闭时等待其他任务的时间，不能无限等待，确保应用最后能被关闭。而不是无限期阻塞
-        executor.setAwaitTerminationSeconds(60);
-        //线程池初始化
-        executor.initialize();
-        return executor;
+    public ManagedExecutor taskExecutor() {
+        if (virtualThreads) {
+            if (VirtualThreadExecutor.isSupported()) {
+                return new VirtualThreadExecutor("asyncTaskExecutor", maxConcurrency, maxWaiting, rejectPolicy);
+            }
+            log.warn("当前 JDK {} 不支持虚拟线程，asyncTaskExecutor 使用线程池", System.getProperty("java.version"));
+        }
+        //线程池关闭时等待已提交任务执行完，最多等待 awaitTerminationSeconds(默认60秒)，确保应用最后能被关闭
+        return new ManagedThreadPool("asyncTaskExecutor", corePoolSize, maxPoolSize, queueCapacity,
+                keepAliveSeconds, rejectPolicy);
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,173 @@
+package com.ssm.example.common.cache;
+
+import com.ssm.example.dao.UserDao;
+import com.ssm.example.domain.User;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.beans.factory.config.PropertyPlaceholderConfigurer;
+import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
+import org.springframework.context.annotation.AnnotationConfigUtils;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import redis.clients.jedis.Jedis;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNoException;
+
+/**
+ * {@link MybatisRedisCache} 经 UserMapper.xml 的二级缓存读写测试，数据库为 H2 内存库，启用本地缓存；
+ * 需要 config.properties 中配置的 redis，连接不上时跳过
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/26 15:00
+ **/
+public class MybatisRedisCacheTest {
+
+    private static final String URL = "jdbc:h2:mem:mybatis_cache;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    private static final String NAMESPACE = UserDao.class.getName();
+    private static final String INDEX_KEY = "mybatis:{" + NAMESPACE + "}";
+
+    private GenericApplicationContext context;
+    private StringRedisTemplate stringRedisTemplate;
+    private UserDao userDao;
+
+    @Before
+    public void setUp() throws Exception {
+        Properties properties = PropertiesLoaderUtils.loadProperties(new ClassPathResource("conf/config.properties"));
+        assumeRedisAvailable(properties);
+        properties.setProperty("redis.nearCache.enabled", "true");
+        properties.setProperty("redis.nearCache.keyPrefixes", "mybatis:");
+
+        context = new GenericApplicationContext();
+        AnnotationConfigUtils.registerAnnotationConfigProcessors(context);
+        PropertyPlaceholderConfigurer configurer = new PropertyPlaceholderConfigurer();
+        configurer.setProperties(properties);
+        context.addBeanFactoryPostProcessor(configurer);
+        new XmlBeanDefinitionReader(context).loadBeanDefinitions("classpath:redis/spring-redis.xml");
+        context.refresh();
+        stringRedisTemplate = context.getBean("stringRedisTemplate", StringRedisTemplate.class);
+        new MybatisRedisCache(NAMESPACE).clear();
+
+        execute("DROP ALL OBJECTS");
+        execute("CREATE TABLE t_user (id INT NOT NULL AUTO_INCREMENT, username VARCHAR(50) NOT NULL, " +
+                "password VARCHAR(50), email VARCHAR(255), phone VARCHAR(255), valid TINYINT DEFAULT 0, status INT, " +
+                "create_time VARCHAR(30), modify_time VARCHAR(30), creator VARCHAR(50), modifier VARCHAR(50), " +
+                "PRIMARY KEY (id, username))");
+        execute("INSERT INTO t_user (id, username, email, status) VALUES (1, 'alice', 'alice@example.com', 0)");
+        execute("INSERT INTO t_user (id, username, email, status) VALUES (2, 'bob', 'bob@example.com', 1)");
+
+        SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+        factoryBean.setDataSource(new DriverManagerDataSource(URL, "sa", ""));
+        factoryBean.setConfigLocation(new ClassPathResource("mybatis/mybatis-config.xml"));
+        Properties configurationProperties = new Properties();
+        configurationProperties.setProperty("mybatis.slowQueryMillis", properties.getProperty("mybatis.slowQueryMillis"));
+        factoryBean.setConfigurationProperties(configurationProperties);
+        factoryBean.setMapperLocations(new ClassPathResource[]{new ClassPathResource("mapper/UserMapper.xml")});
+        factoryBean.setTypeAliasesPackage("com.ssm.example.domain");
+        SqlSessionFactory sqlSessionFactory = factoryBean.getObject();
+        userDao = new SqlSessionTemplate(sqlSessionFactory).getMapper(UserDao.class);
+    }
+
+    @After
+    public void tearDown() {
+        if (context != null) {
+            new MybatisRedisCache(NAMESPACE).clear();
+            context.close();
+            MybatisRedisCache.setRedisCache(null);
+        }
+    }
+
+    @Test
+    public void queryIsCachedUntilNamespaceIsWritten() throws Exception {
+        assertEquals("alice@example.com", userDao.selectById(1).getEmail());
+        // 绕过 mybatis 修改数据库，缓存未失效时仍读到旧值
+        execute("UPDATE t_user SET email = 'changed@example.com' WHERE id = 1");
+        assertEquals("alice@example.com", userDao.selectById(1).getEmail());
+
+        User user = new User();
+        user.setId(1);
+        user.setEmail("new@example.com");
+        userDao.updateById(user);
+        assertEquals("new@example.com", userDao.selectById(1).getEmail());
+    }
+
+    @Test
+    public void callerCanModifyCachedResult() {
+        User first = userDao.selectById(1);
+        first.setEmail("modified-after-put");
+        User second = userDao.selectById(1);
+        assertEquals("alice@example.com", second.getEmail());
+        second.setEmail("modified-after-get");
+        User third = userDao.selectById(1);
+        assertEquals("alice@example.com", third.getEmail());
+        assertNotSame(second, third);
+    }
+
+    @Test
+    public void writeDeletesEveryIndexedEntry() {
+        userDao.selectById(1);
+        userDao.selectById(2);
+        userDao.selectByIds(Arrays.asList(1, 2));
+        Set<String> entries = stringRedisTemplate.opsForSet().members(INDEX_KEY);
+        assertEquals(3, entries.size());
+        for (String entry : entries) {
+            assertTrue(entry, entry.startsWith(INDEX_KEY + ":"));
+            assertTrue(entry, stringRedisTemplate.hasKey(entry));
+        }
+
+        User user = new User();
+        user.setId(2);
+        user.setEmail("bob@example.org");
+        userDao.updateById(user);
+
+        assertFalse(stringRedisTemplate.hasKey(INDEX_KEY));
+        for (String entry : entries) {
+            assertFalse(entry, stringRedisTemplate.hasKey(entry));
+        }
+        User updated = userDao.selectById(2);
+        assertEquals("bob@example.org", updated.getEmail());
+        // 只更新非空字段，未设置的 status 保持不变
+        assertEquals(Integer.valueOf(1), updated.getStatus());
+    }
+
+    private static void assumeRedisAvailable(Properties properties) {
+        Jedis jedis = new Jedis(properties.getProperty("redis.host"),
+                Integer.parseInt(properties.getProperty("redis.port")), 1000);
+        try {
+            String password = properties.getProperty("redis.pass");
+            if (password != null && !password.isEmpty()) {
+                jedis.auth(password);
+            }
+            jedis.ping();
+        } catch (Exception e) {
+            assumeNoException(e);
+        } finally {
+            jedis.close();
+        }
+    }
+
+    private static void execute(String sql) throws Exception {
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.ssm.example.common.context;
+
+import com.ssm.example.controller.TestController;
+import com.ssm.example.task.ExampleTask;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.config.PropertyPlaceholderConfigurer;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResourceLoader;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.scheduling.annotation.ScheduledAnnotationBeanPostProcessor;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.CronTask;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+import org.springframework.scheduling.support.ScheduledMethodRunnable;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.context.support.XmlWebApplicationContext;
+import redis.clients.jedis.Jedis;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeNoException;
+
+/**
+ * 按 web.xml 的方式启动根容器 spring-context.xml 及 DispatcherServlet 子容器 spring-web.xml，
+ * 检查定时任务、连接池只在根容器中创建，每个 cron 只注册一次；数据库为 H2 内存库，redis 连接不上时跳过
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/26 16:00
+ **/
+public class ContextHierarchyTest {
+
+    private XmlWebApplicationContext root;
+    private XmlWebApplicationContext web;
+    private RegistrarCapture rootScheduling;
+    private RegistrarCapture webScheduling;
+
+    @Before
+    public void setUp() throws Exception {
+        Properties config = PropertiesLoaderUtils.loadProperties(new ClassPathResource("conf/config.properties"));
+        assumeRedisAvailable(config);
+
+        MockServletContext servletContext = new MockServletContext("src/main/webapp", new FileSystemResourceLoader());
+        root = new XmlWebApplicationContext();
+        root.setServletContext(servletContext);
+        root.setConfigLocation("classpath:spring/spring-context.xml");
+        root.addBeanFactoryPostProcessor(h2DataSource());
+        rootScheduling = new RegistrarCapture();
+        root.addBeanFactoryPostProcessor(beanFactory -> beanFactory.registerSingleton("registrarCapture", rootScheduling));
+        root.refresh();
+        servletContext.setAttribute(WebApplicationContext.ROOT_WEB_APPLICATION_CONTEXT_ATTRIBUTE, root);
+
+        web = new XmlWebApplicationContext();
+        web.setServletContext(servletContext);
+        web.setParent(root);
+        web.setNamespace("springMvc-servlet");
+        web.setConfigLocation("classpath:spring/spring-web.xml");
+        webScheduling = new RegistrarCapture();
+        web.addBeanFactoryPostProcessor(beanFactory -> beanFactory.registerSingleton("registrarCapture", webScheduling));
+        web.refresh();
+    }
+
+    @After
+    public void tearDown() {
+        if (web != null) {
+            web.close();
+        }
+        if (root != null) {
+            root.close();
+        }
+    }
+
+    @Test
+    public void eachCronIsScheduledOnce() {
+        List<String> methods = new ArrayList<>();
+        for (CronTask task : rootScheduling.registrar.getCronTaskList()) {
+            methods.add(((ScheduledMethodRunnable) task.getRunnable()).getMethod().getName());
+        }
+        Collections.sort(methods);
+        assertEquals("[test1, test2]", methods.toString());
+        // 子容器没有 @Scheduled 处理器，不会再注册一遍
+        assertNull(webScheduling.registrar);
+    }
+
+    @Test
+    public void sharedBeansLiveOnlyInRootContext() {
+        assertEquals(1, root.getBeanNamesForType(ExampleTask.class).length);
+        assertEquals(1, root.getBeanNamesForType(ScheduledAnnotationBeanPostProcessor.class).length);
+        assertEquals(0, web.getBeanFactory().getBeanNamesForType(ExampleTask.class).length);
+        assertEquals(0, web.getBeanFactory().getBeanNamesForType(ScheduledAnnotationBeanPostProcessor.class).length);
+        assertEquals(0, web.getBeanFactory().getBeanNamesForType(DataSource.class).length);
+        assertEquals(0, web.getBeanFactory().getBeanNamesForType(RedisConnectionFactory.class).length);
+
+        // controller 只在子容器中，通过父容器取得 service
+        assertEquals(0, root.getBeanNamesForType(TestController.class).length);
+        assertEquals(1, web.getBeanNamesForType(TestController.class).length);
+    }
+
+    /**
+     * 在 spring-context.xml 的占位符处理之前替换数据库配置，数据源改为 H2，redis 连接池不预先建立连接，关闭时不等待执行中的定时任务
+     */
+    private static PropertyPlaceholderConfigurer h2DataSource() {
+        Properties properties = new Properties();
+        properties.setProperty("jdbc.driver", "org.h2.Driver");
+        properties.setProperty("jdbc.url", "jdbc:h2:mem:context_hierarchy;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        properties.setProperty("jdbc.username", "sa");
+        properties.setProperty("jdbc.password", "");
+        properties.setProperty("jdbc.pool.maximumPoolSize", "2");
+        properties.setProperty("jdbc.pool.minimumIdle", "1");
+        properties.setProperty("jdbc.replica.urls", "");
+        properties.setProperty("redis.minIdle", "1");
+        properties.setProperty("scheduler.awaitTerminationSeconds", "0");
+        PropertyPlaceholderConfigurer configurer = new PropertyPlaceholderConfigurer();
+        configurer.setProperties(properties);
+        configurer.setIgnoreUnresolvablePlaceholders(true);
+        return configurer;
+    }
+
+    private static void assumeRedisAvailable(Properties properties) {
+        Jedis jedis = new Jedis(properties.getProperty("redis.host"),
+                Integer.parseInt(properties.getProperty("redis.port")), 1000);
+        try {
+            String password = properties.getProperty("redis.pass");
+            if (password != null && !password.isEmpty()) {
+                jedis.auth(password);
+            }
+            jedis.ping();
+        } catch (Exception e) {
+            assumeNoException(e);
+        } finally {
+            jedis.close();
+        }
+    }
+
+    /**
+     * 记录容器中 @Scheduled 处理器使用的 ScheduledTaskRegistrar，容器中没有处理器时不会被调用
+     */
+    private static class RegistrarCapture implements SchedulingConfigurer {
+        private ScheduledTaskRegistrar registrar;
+
+        @Override
+        public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
+            this.registrar = taskRegistrar;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.ssm.example.common.db;
+
+import com.ssm.example.common.metrics.LatencyHistogram;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.dbcp.BasicDataSource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 连接池借还连接的延迟对比：commons-dbcp 1.4 与 HikariCP，相同连接数、线程数多于连接数(存在竞争)
+ * <p>
+ * 数据库连接取自 conf/config.properties，可以用同名系统属性覆盖，例如 -Djdbc.url=...；
+ * 参数：[线程数，默认连接数的4倍] [每个连接池的测试时间(秒)，默认10]
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/21 16:30
+ **/
+@Slf4j
+public class DataSourceBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Properties config = PropertiesLoaderUtils.loadProperties(new ClassPathResource("conf/config.properties"));
+        config.putAll(System.getProperties());
+        int poolSize = Integer.parseInt(config.getProperty("jdbc.pool.maximumPoolSize"));
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : poolSize * 4;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 10;
+
+        BasicDataSource dbcp = new BasicDataSource();
+        dbcp.setDriverClassName(config.getProperty("jdbc.driver"));
+        dbcp.setUrl(config.getProperty("jdbc.url"));
+        dbcp.setUsername(config.getProperty("jdbc.username"));
+        dbcp.setPassword(config.getProperty("jdbc.password"));
+        dbcp.setInitialSize(poolSize);
+        dbcp.setMaxActive(poolSize);
+        dbcp.setMaxIdle(poolSize);
+        dbcp.setMinIdle(poolSize);
+        dbcp.setMaxWait(30000);
+        dbcp.setValidationQuery("SELECT 1");
+        dbcp.setTestWhileIdle(true);
+
+        HikariDataSource hikari = new HikariDataSource();
+        hikari.setPoolName("benchmark");
+        hikari.setDriverClassName(config.getProperty("jdbc.driver"));
+        hikari.setJdbcUrl(config.getProperty("jdbc.url"));
+        hikari.setUsername(config.getProperty("jdbc.username"));
+        hikari.setPassword(config.getProperty("jdbc.password"));
+        hikari.setMaximumPoolSize(poolSize);
+        hikari.setMinimumIdle(poolSize);
+        hikari.setConnectionTimeout(30000);
+
+        log.info("连接数 {}，线程数 {}，每项 {} 秒", new Object[]{poolSize, threads, seconds});
+        try {
+            run("commons-dbcp", dbcp, threads, seconds);
+            run("HikariCP", hikari, threads, seconds);
+        } finally {
+            dbcp.close();
+            hikari.close();
+        }
+    }
+
+    private static void run(String name, DataSource dataSource, int threads, long seconds) throws Exception {
+        // 预热：建立全部连接
+        bench(dataSource, threads, TimeUnit.SECONDS.toNanos(Math.max(1, seconds / 5)), new LatencyHistogram(), new LongAdder());
+        LatencyHistogram histogram = new LatencyHistogram();
+        LongAdder borrows = new LongAdder();
+        bench(dataSource, threads, TimeUnit.SECONDS.toNanos(seconds), histogram, borrows);
+        log.info("{}: 吞吐 {} 次/秒，获取连接耗时 {}", new Object[]{name, borrows.sum() / seconds, histogram.snapshot()});
+    }
+
+    private static void bench(DataSource dataSource, int threads, long durationNanos,
+                              LatencyHistogram histogram, LongAdder borrows) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    long deadline = System.nanoTime() + durationNanos;
+                    while (System.nanoTime() < deadline) {
+                        long begin = System.nanoTime();
+                        try (Connection connection = dataSource.getConnection()) {
+                            histogram.recordNanos(System.nanoTime() - begin);
+                            // 模拟持有连接执行一条很快的语句
+                            connection.isReadOnly();
+                        }
+                        borrows.increment();
+                    }
+                } catch (Exception e) {
+                    log.error("获取连接失败", e);
+                } finally {
+                    done.countDown();
+                }
+            }, "benchmark-" + i);
+            thread.start();
+        }
+        start.countDown();
+        done.await();
+    }
+}
@@ -0,0 +1,150 @@
+package com.ssm.example.common.db;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link ReadWriteRoutingDataSource} 的路由测试，主从库都是 H2 内存库，whoami 表记录库名
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/26 10:00
+ **/
+public class ReadWriteRoutingDataSourceTest {
+
+    private static final String PRIMARY_URL = "jdbc:h2:mem:rw_primary;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    private static final String REPLICA_URL = "jdbc:h2:mem:rw_replica;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    private static final String REPLICA = "main-replica-0";
+
+    private HikariDataSource primary;
+    private ReadWriteRoutingDataSource routing;
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+
+    @Before
+    public void setUp() throws Exception {
+        createDatabase(PRIMARY_URL, "primary");
+        createDatabase(REPLICA_URL, "replica");
+
+        primary = new HikariDataSource();
+        primary.setPoolName("main");
+        primary.setJdbcUrl(PRIMARY_URL);
+        primary.setUsername("sa");
+        primary.setPassword("");
+        primary.setMaximumPoolSize(2);
+
+        routing = new ReadWriteRoutingDataSource();
+        routing.setPrimary(primary);
+        routing.setReplicaUrls(REPLICA_URL);
+        routing.setHealthCheckIntervalMillis(100);
+        routing.setMaxLagSeconds(5);
+        // 与 SHOW REPLICA STATUS 一样有多列，延迟不在第一列
+        routing.setLagQuery("SELECT * FROM replica_status");
+        routing.afterPropertiesSet();
+
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        awaitReplicaHealthy(true);
+    }
+
+    @After
+    public void tearDown() {
+        ReadWriteRoutingDataSource.markReadOnly(false);
+        routing.destroy();
+        primary.close();
+    }
+
+    @Test
+    public void queryWithoutTransactionUsesPrimary() {
+        assertEquals("primary", whoami());
+    }
+
+    @Test
+    public void readOnlyTransactionUsesReplica() {
+        assertEquals("replica", inTransaction(true));
+    }
+
+    @Test
+    public void readWriteTransactionUsesPrimary() {
+        assertEquals("primary", inTransaction(false));
+    }
+
+    @Test
+    public void readOnlyMethodUsesReplicaOutsideTransaction() {
+        ReadWriteRoutingDataSource.markReadOnly(true);
+        assertEquals("replica", whoami());
+    }
+
+    @Test
+    public void readOnlyMethodInsideReadWriteTransactionUsesPrimary() {
+        ReadWriteRoutingDataSource.markReadOnly(true);
+        assertEquals("primary", inTransaction(false));
+    }
+
+    @Test
+    public void laggingReplicaFallsBackToPrimary() throws Exception {
+        execute(REPLICA_URL, "UPDATE replica_status SET Seconds_Behind_Source = 60");
+        awaitReplicaHealthy(false);
+
+        assertEquals("primary", inTransaction(true));
+        assertEquals(1L, routing.stats().get("fallbacks"));
+
+        execute(REPLICA_URL, "UPDATE replica_status SET Seconds_Behind_Source = 0");
+        awaitReplicaHealthy(true);
+        assertEquals("replica", inTransaction(true));
+    }
+
+    private String inTransaction(boolean readOnly) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(readOnly);
+        return template.execute(status -> whoami());
+    }
+
+    private String whoami() {
+        return jdbcTemplate.queryForObject("SELECT name FROM whoami", String.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void awaitReplicaHealthy(boolean healthy) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            Map<String, Object> replica = (Map<String, Object>) routing.stats().get(REPLICA);
+            if (Boolean.valueOf(healthy).equals(replica.get("healthy"))) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        fail("从库健康状态没有变为 " + healthy + "：" + routing.stats());
+    }
+
+    private static void createDatabase(String url, String name) throws Exception {
+        execute(url, "DROP ALL OBJECTS");
+        execute(url, "CREATE TABLE whoami (name VARCHAR(20))");
+        execute(url, "INSERT INTO whoami VALUES ('" + name + "')");
+        execute(url, "CREATE TABLE replica_status (Replica_IO_State VARCHAR(64), Seconds_Behind_Source INT)");
+        execute(url, "INSERT INTO replica_status VALUES ('Waiting for source to send event', 0)");
+    }
+
+    private static void execute(String url, String sql) throws Exception {
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
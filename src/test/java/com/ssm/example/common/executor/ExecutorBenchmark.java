@@ -0,0 +1,73 @@
+package com.ssm.example.common.executor;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 线程池与虚拟线程的吞吐量对比：提交 tasks 个阻塞任务(sleep 模拟数据库、redis、HTTP 等待)，统计全部完成的耗时
+ * <p>
+ * 用 JDK 21 及以上运行，参数依次为任务数(默认10000)、每个任务阻塞毫秒数(默认100)、线程池线程数及虚拟线程并发数(默认200)：
+ * <pre>
+ * java -cp target/test-classes:target/classes:依赖 com.ssm.example.common.executor.ExecutorBenchmark 10000 100 200
+ * </pre>
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/24 11:00
+ **/
+public class ExecutorBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        long blockMillis = args.length > 1 ? Long.parseLong(args[1]) : 100;
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        System.out.printf("任务数 %d，每个任务阻塞 %dms，JDK %s%n", tasks, blockMillis, System.getProperty("java.version"));
+        ManagedThreadPool pool = new ManagedThreadPool("bench-pool", concurrency, concurrency, tasks, 60,
+                ManagedExecutor.RejectPolicy.ABORT);
+        run("线程池(" + concurrency + " 线程)", pool, tasks, blockMillis);
+        pool.destroy();
+        if (!VirtualThreadExecutor.isSupported()) {
+            System.out.println("当前 JDK 不支持虚拟线程");
+            return;
+        }
+        VirtualThreadExecutor limited = new VirtualThreadExecutor("bench-vt", concurrency, tasks,
+                ManagedExecutor.RejectPolicy.ABORT);
+        run("虚拟线程(并发 " + concurrency + ")", limited, tasks, blockMillis);
+        limited.destroy();
+        VirtualThreadExecutor unlimited = new VirtualThreadExecutor("bench-vt-all", tasks, 0,
+                ManagedExecutor.RejectPolicy.ABORT);
+        run("虚拟线程(并发 " + tasks + ")", unlimited, tasks, blockMillis);
+        unlimited.destroy();
+    }
+
+    private static void run(String label, ManagedExecutor executor, int tasks, long blockMillis)
+            throws InterruptedException {
+        // 预热
+        execute(executor, Math.min(tasks, 1000), 1);
+        long start = System.nanoTime();
+        execute(executor, tasks, blockMillis);
+        long elapsed = System.nanoTime() - start;
+        Map<?, ?> waitTime = (Map<?, ?>) executor.stats().get("waitTime");
+        System.out.printf("%-24s 耗时 %6dms，吞吐量 %8.0f 任务/秒，排队 p99 %dms%n", label,
+                TimeUnit.NANOSECONDS.toMillis(elapsed), tasks * 1e9 / elapsed,
+                (Long) waitTime.get("p99Micros") / 1000);
+    }
+
+    private static void execute(ManagedExecutor executor, int tasks, long blockMillis) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(tasks);
+        for (int i = 0; i < tasks; i++) {
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(blockMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+}
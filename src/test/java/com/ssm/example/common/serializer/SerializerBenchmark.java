@@ -0,0 +1,87 @@
+package com.ssm.example.common.serializer;
+
+import com.alibaba.fastjson.JSON;
+import com.ssm.example.domain.User;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * CompactRedisSerializer 与 fastjson 字符串的对比：序列化后大小、序列化/反序列化耗时
+ *
+ * @author ming
+ * @version 1.0.0
+ * @since 2022/4/19 14:40
+ **/
+@Slf4j
+public class SerializerBenchmark {
+
+    private static final int WARMUP = 20000;
+    private static final int ROUNDS = 100000;
+
+    public static void main(String[] args) throws Exception {
+        CompactRedisSerializer compact = new CompactRedisSerializer();
+        compact.afterPropertiesSet();
+        CompactRedisSerializer registered = new CompactRedisSerializer();
+        registered.setRegisteredClasses("com.ssm.example.domain.User,java.util.ArrayList");
+        registered.afterPropertiesSet();
+
+        User user = newUser(1);
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            users.add(newUser(i));
+        }
+
+        run("单个 User", user, User.class, compact, registered, ROUNDS);
+        run("100 个 User 的 List(超过阈值压缩)", users, List.class, compact, registered, ROUNDS / 50);
+    }
+
+    private static void run(String name, Object value, Class<?> type, CompactRedisSerializer compact,
+                            CompactRedisSerializer registered, int rounds) {
+        log.info("==== {} ====", name);
+        bench("fastjson", rounds,
+                v -> JSON.toJSONString(v).getBytes(StandardCharsets.UTF_8),
+                b -> JSON.parseObject(new String(b, StandardCharsets.UTF_8), type), value);
+        bench("compact", rounds, compact::serialize, compact::deserialize, value);
+        bench("compact(注册类)", rounds, registered::serialize, registered::deserialize, value);
+    }
+
+    private static void bench(String name, int rounds, Function<Object, byte[]> serializer,
+                              Function<byte[], Object> deserializer, Object value) {
+        byte[] bytes = serializer.apply(value);
+        for (int i = 0; i < WARMUP; i++) {
+            deserializer.apply(serializer.apply(value));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            bytes = serializer.apply(value);
+        }
+        long serializeNanos = (System.nanoTime() - start) / rounds;
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            deserializer.apply(bytes);
+        }
+        long deserializeNanos = (System.nanoTime() - start) / rounds;
+        log.info("{}: 大小 {} 字节, 序列化 {} ns/次, 反序列化 {} ns/次",
+                new Object[]{name, bytes.length, serializeNanos, deserializeNanos});
+    }
+
+    private static User newUser(int id) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername("user" + id);
+        user.setPassword("e10adc3949ba59abbe56e057f20f883e");
+        user.setEmail("user" + id + "@example.com");
+        user.setPhone("1380013" + String.format("%04d", id));
+        user.setValid(true);
+        user.setStatus(1);
+        user.setCreateTime("2022-04-19 10:00:00");
+        user.setModifyTime("2022-04-19 10:00:00");
+        user.setCreator("admin");
+        user.setModifier("admin");
+        return user;
+    }
+}